@@ -0,0 +1,67 @@
+package bguspl.set;
+
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs the frequent events of the game (UI updates, key presses, dealt and collected cards) without building their
+ * messages on the logging thread: the level is checked first, and the message template and its numeric arguments are
+ * handed to the AsyncLogHandler of the logger, whose writer thread builds the message.
+ * A logger without an AsyncLogHandler (e.g. in the tests) gets the message built on the logging thread, still only
+ * when the level is loggable.
+ */
+public class AsyncLog {
+
+    private final Logger logger;
+
+    /**
+     * The handler of the logger the templates are enqueued to (null if it has none).
+     */
+    private final AsyncLogHandler handler;
+
+    private AsyncLog(Logger logger, AsyncLogHandler handler) {
+        this.logger = logger;
+        this.handler = handler;
+    }
+
+    /**
+     * @param logger - the logger to log to.
+     * @return - a log writing to the AsyncLogHandler of the logger (if it has one, it should be added before this).
+     */
+    public static AsyncLog of(Logger logger) {
+        Handler[] handlers = logger.getHandlers();
+        if (handlers != null)
+            for (Handler handler : handlers)
+                if (handler instanceof AsyncLogHandler) return new AsyncLog(logger, (AsyncLogHandler) handler);
+        return new AsyncLog(logger, null);
+    }
+
+    public boolean isLoggable(Level level) {
+        return logger.isLoggable(level);
+    }
+
+    public void log(Level level, String message) {
+        if (logger.isLoggable(level)) publish(level, message, 0, 0, 0, 0);
+    }
+
+    /**
+     * Logs a message template: every {} in the template is replaced by the next argument.
+     */
+    public void log(Level level, String template, long first) {
+        if (logger.isLoggable(level)) publish(level, template, 1, first, 0, 0);
+    }
+
+    public void log(Level level, String template, long first, long second) {
+        if (logger.isLoggable(level)) publish(level, template, 2, first, second, 0);
+    }
+
+    public void log(Level level, String template, long first, long second, long third) {
+        if (logger.isLoggable(level)) publish(level, template, 3, first, second, third);
+    }
+
+    private void publish(Level level, String template, int arguments, long first, long second, long third) {
+        if (handler != null) handler.publish(level, template, arguments, first, second, third);
+        else logger.log(level, AsyncLogHandler.format(template, arguments, first, second, third));
+    }
+}
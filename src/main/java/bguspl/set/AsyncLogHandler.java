@@ -0,0 +1,231 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that never blocks the logging threads: the records are put into a ring buffer of preallocated slots
+ * and a background thread formats them and publishes them to the wrapped handler (e.g. the log file).
+ * Besides the log records of the logger, the hot paths can enqueue a message template with up to three numeric
+ * arguments (see AsyncLog), which is only turned into a string by the background thread, so logging an event from
+ * the dealer and player threads allocates nothing.
+ * When the buffer is full the records are dropped (and counted) rather than waiting for the writer.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * A slot of the ring buffer.
+     */
+    private static class Slot {
+
+        /**
+         * The sequence number of the record in the slot plus 1, negated while a logging thread fills the slot (the
+         * slot is ready for the writer once it is positive).
+         */
+        volatile long sequence;
+
+        LogRecord record;
+        Level level;
+        long millis;
+        String template;
+        int arguments;
+        long first, second, third;
+    }
+
+    private final Handler target;
+
+    private final Slot[] slots;
+
+    private final int mask;
+
+    /**
+     * The number of slots claimed by the logging threads so far.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /**
+     * The number of records written so far (only changed by the writer thread).
+     */
+    private volatile long written;
+
+    /**
+     * The number of records dropped because the buffer was full.
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    /**
+     * @param target   - the handler to publish the records to (from the writer thread only).
+     * @param capacity - the number of records the buffer holds (rounded up to a power of 2).
+     */
+    public AsyncLogHandler(Handler target, int capacity) {
+        this.target = target;
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) slots[i] = new Slot();
+        mask = size - 1;
+        writer = new Thread(this::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) return;
+        Slot slot = claim();
+        if (slot == null) return;
+        slot.record = record;
+        release(slot);
+    }
+
+    /**
+     * Enqueues a message template (the message is built by the writer thread, see format).
+     *
+     * @param level     - the level of the message (the caller checks that it is loggable).
+     * @param template  - the message, with {} where the arguments go.
+     * @param arguments - the number of arguments (0 to 3).
+     */
+    void publish(Level level, String template, int arguments, long first, long second, long third) {
+        Slot slot = claim();
+        if (slot == null) return;
+        slot.level = level;
+        slot.millis = System.currentTimeMillis();
+        slot.template = template;
+        slot.arguments = arguments;
+        slot.first = first;
+        slot.second = second;
+        slot.third = third;
+        release(slot);
+    }
+
+    /**
+     * Claims the next free slot of the ring buffer (lock-free).
+     *
+     * @return - the slot, or null if the buffer is full or the handler is closed.
+     */
+    private Slot claim() {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (closed || sequence - written >= slots.length) {
+                dropped.increment();
+                return null;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        Slot slot = slots[(int) sequence & mask];
+        slot.sequence = -sequence - 1; // claimed, not ready yet
+        return slot;
+    }
+
+    private void release(Slot slot) {
+        slot.sequence = -slot.sequence;
+    }
+
+    /**
+     * The writer thread: publishes the records in the order their slots were claimed.
+     */
+    @SuppressWarnings("deprecation") // LogRecord::setMillis is the only way to set the time of a record on Java 8
+    private void write() {
+        StringBuilder message = new StringBuilder(256);
+        long next = 0;
+        boolean unflushed = false;
+        while (!closed || next < claimed.get()) {
+            Slot slot = slots[(int) next & mask];
+            if (slot.sequence != next + 1) { // not ready, or not claimed yet
+                if (unflushed) target.flush();
+                unflushed = false;
+                LockSupport.parkNanos(1_000_000);
+                continue;
+            }
+            unflushed = true;
+            LogRecord record = slot.record;
+            if (record == null) {
+                message.setLength(0);
+                record = new LogRecord(slot.level, format(message, slot).toString());
+                record.setMillis(slot.millis);
+            }
+            slot.record = null;
+            slot.template = null;
+            try {
+                target.publish(record);
+            } catch (RuntimeException e) {
+                reportError("cannot publish a log record", e, 0);
+            }
+            written = ++next;
+        }
+        target.flush();
+    }
+
+    /**
+     * Builds the message of a template slot: every {} in the template is replaced by the next argument.
+     */
+    private static StringBuilder format(StringBuilder message, Slot slot) {
+        String template = slot.template;
+        int argument = 0, from = 0, at;
+        while (argument < slot.arguments && (at = template.indexOf("{}", from)) >= 0) {
+            message.append(template, from, at).append(argument == 0 ? slot.first : argument == 1 ? slot.second
+                    : slot.third);
+            argument++;
+            from = at + 2;
+        }
+        return message.append(template, from, template.length());
+    }
+
+    /**
+     * Builds the message of a template the same way the writer thread does (for loggers without an AsyncLogHandler).
+     */
+    static String format(String template, int arguments, long first, long second, long third) {
+        Slot slot = new Slot();
+        slot.template = template;
+        slot.arguments = arguments;
+        slot.first = first;
+        slot.second = second;
+        slot.third = third;
+        return format(new StringBuilder(), slot).toString();
+    }
+
+    /**
+     * @return - the number of records dropped because the buffer was full.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void setFormatter(Formatter formatter) {
+        super.setFormatter(formatter);
+        target.setFormatter(formatter);
+    }
+
+    /**
+     * Waits until the records enqueued so far are written, and flushes the wrapped handler.
+     */
+    @Override
+    public void flush() {
+        long until = claimed.get();
+        while (written < until && writer.isAlive()) LockSupport.parkNanos(100_000);
+        target.flush();
+    }
+
+    /**
+     * Writes the enqueued records, stops the writer thread and closes the wrapped handler.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+}
@@ -0,0 +1,153 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+
+/**
+ * The card images of the window, loaded lazily: an image is loaded (on a background pool, several at a time) the
+ * first time its card is needed, scaled once to the size of a table cell, and kept in a cache of at most
+ * config.cardCacheSize images (the least recently used images are evicted). Until an image is loaded the window
+ * shows the empty card, and it is notified when the image is ready.
+ * Cards without an image in the resources (decks other than the shipped 81 cards) are drawn by a CardRenderer.
+ */
+class CardImages {
+
+    private final Logger logger;
+    private final Config config;
+
+    /**
+     * Called (on a loader thread) with the card whose image was loaded.
+     */
+    private final IntConsumer loaded;
+
+    /**
+     * The scaled card images, in access order (guarded by itself).
+     */
+    private final LinkedHashMap<Integer, Image> cache;
+
+    /**
+     * The cards whose images are being loaded (guarded by the cache).
+     */
+    private final Set<Integer> loading = new HashSet<>();
+
+    private final ExecutorService loaders;
+
+    /**
+     * Draws the cards that have no image in the resources.
+     */
+    private final CardRenderer renderer;
+
+    /**
+     * The scaled image of the empty slot.
+     */
+    final Image emptyCard;
+
+    /**
+     * @param loaded - called (on a loader thread) with the card whose image was loaded.
+     */
+    CardImages(Logger logger, Config config, IntConsumer loaded) {
+        this.logger = logger;
+        this.config = config;
+        this.loaded = loaded;
+        this.renderer = new CardRenderer(config);
+        int capacity = Math.max(config.cardCacheSize, 2 * config.tableSize); // never evict the cards on the table
+        this.cache = new LinkedHashMap<Integer, Image>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Image> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        AtomicInteger threads = new AtomicInteger();
+        loaders = Executors.newFixedThreadPool(Math.min(4, Runtime.getRuntime().availableProcessors()), task -> {
+            Thread thread = new Thread(task, "card-loader-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            emptyCard = scale(read("cards/empty_card.png"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param card - a card.
+     * @return - the scaled image of the card, or null if it is not loaded yet (it is loaded in the background).
+     */
+    Image get(int card) {
+        synchronized (cache) {
+            Image image = cache.get(card);
+            if (image == null && !loaders.isShutdown() && loading.add(card)) loaders.execute(() -> load(card));
+            return image;
+        }
+    }
+
+    /**
+     * Starts loading the image of a card in the background (if it is not loaded already).
+     */
+    void prefetch(int card) {
+        get(card);
+    }
+
+    private void load(int card) {
+        Image image;
+        try {
+            image = scale(read("cards/" + UserInterfaceSwing.intInBaseToPaddedString(card, config.featureCount,
+                    config.featureSize) + ".png"));
+        } catch (FileNotFoundException e) {
+            image = renderer.render(card);
+        } catch (IOException e) {
+            logger.severe("cannot load the image of card " + card + ": " + e);
+            image = emptyCard;
+        }
+        synchronized (cache) {
+            cache.put(card, image);
+            loading.remove(card);
+        }
+        loaded.accept(card);
+    }
+
+    private BufferedImage read(String resource) throws IOException {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) throw new FileNotFoundException(resource);
+            return ImageIO.read(in);
+        }
+    }
+
+    /**
+     * @return - the image scaled to the size of a table cell (so painting it needs no scaling).
+     */
+    private Image scale(BufferedImage image) {
+        BufferedImage scaled = new BufferedImage(config.cellWidth, config.cellHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, config.cellWidth, config.cellHeight, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    /**
+     * Stops the loaders.
+     */
+    void dispose() {
+        synchronized (cache) { // so a late repaint does not start a load after the loaders stopped
+            loaders.shutdownNow();
+        }
+    }
+}
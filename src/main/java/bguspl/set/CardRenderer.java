@@ -0,0 +1,131 @@
+package bguspl.set;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws card images from the features of the cards, for decks that have no card images in the resources (any
+ * FeatureCount and FeatureSize). The features are the digits of the card id in base config.featureSize (the same
+ * digits the image files are named by):
+ * 1st feature - the number of shapes (1 to featureSize),
+ * 2nd feature - the color of the shapes (featureSize hues around the color wheel),
+ * 3rd feature - the shape (oval, diamond, rectangle, triangle, then regular polygons of 5, 6... corners),
+ * 4th feature - the shading (solid, open, then stripes of growing density),
+ * every other feature is written at the bottom of the card as "feature:value".
+ */
+class CardRenderer {
+
+    private final Config config;
+
+    CardRenderer(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * @param card - a card.
+     * @return - the features of the card (the digits of its id in base featureSize, most significant first).
+     */
+    int[] features(int card) {
+        int[] features = new int[config.featureCount];
+        for (int i = config.featureCount - 1; i >= 0; i--) {
+            features[i] = card % config.featureSize;
+            card /= config.featureSize;
+        }
+        return features;
+    }
+
+    /**
+     * @return - the image of the card, of the size of a table cell.
+     */
+    BufferedImage render(int card) {
+        int[] features = features(card);
+        int width = config.cellWidth, height = config.cellHeight;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int margin = Math.max(2, Math.min(width, height) / 20);
+        Shape face = new RoundRectangle2D.Float(margin, margin, width - 2 * margin - 1, height - 2 * margin - 1,
+                4 * margin, 4 * margin);
+        graphics.setColor(Color.WHITE);
+        graphics.fill(face);
+        graphics.setColor(Color.GRAY);
+        graphics.setStroke(new BasicStroke(1));
+        graphics.draw(face);
+
+        int count = feature(features, 0) + 1;
+        Color color = Color.getHSBColor((float) feature(features, 1) / config.featureSize, 0.85f, 0.8f);
+        int kind = feature(features, 2), shading = feature(features, 3);
+
+        // the shapes are laid out in a row, sized for the largest count
+        boolean extra = config.featureCount > 4;
+        int slots = Math.max(3, config.featureSize);
+        int shapeWidth = (width - 4 * margin) / slots - margin;
+        int shapeHeight = height - 6 * margin - (extra ? height / 6 : 0);
+        int left = (width - count * (shapeWidth + margin) + margin) / 2;
+        for (int i = 0; i < count; i++) {
+            Shape shape = shape(kind, left + i * (shapeWidth + margin), 3 * margin, shapeWidth, shapeHeight);
+            paint(graphics, shape, color, shading, margin);
+        }
+
+        if (extra) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 4; i < features.length; i++) text.append(i + 1).append(':').append(features[i]).append(' ');
+            graphics.setColor(Color.DARK_GRAY);
+            graphics.setFont(new Font("SansSerif", Font.BOLD, Math.max(8, height / 8)));
+            graphics.drawString(text.toString().trim(), 3 * margin, height - 3 * margin);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private static int feature(int[] features, int index) {
+        return index < features.length ? features[index] : 0;
+    }
+
+    private static Shape shape(int kind, int x, int y, int width, int height) {
+        switch (kind) {
+            case 0:
+                return new Ellipse2D.Float(x, y, width, height);
+            case 1:
+                return new Polygon(new int[]{x + width / 2, x + width, x + width / 2, x},
+                        new int[]{y, y + height / 2, y + height, y + height / 2}, 4);
+            case 2:
+                return new RoundRectangle2D.Float(x, y, width, height, width / 3f, width / 3f);
+            default: // a regular polygon (a regular 4-gon would be the diamond)
+                int corners = kind == 3 ? 3 : kind + 1;
+                Polygon polygon = new Polygon();
+                for (int corner = 0; corner < corners; corner++) {
+                    double angle = 2 * Math.PI * corner / corners - Math.PI / 2;
+                    polygon.addPoint((int) Math.round(x + width / 2.0 + Math.cos(angle) * width / 2.0),
+                            (int) Math.round(y + height / 2.0 + Math.sin(angle) * height / 2.0));
+                }
+                return polygon;
+        }
+    }
+
+    private static void paint(Graphics2D graphics, Shape shape, Color color, int shading, int margin) {
+        graphics.setColor(color);
+        if (shading == 0) graphics.fill(shape);
+        else if (shading > 1) { // stripes, denser for higher shadings
+            Shape clip = graphics.getClip();
+            graphics.clip(shape);
+            Rectangle bounds = shape.getBounds();
+            int spacing = Math.max(2, 2 * margin / (shading - 1));
+            for (int y = bounds.y; y <= bounds.y + bounds.height; y += spacing)
+                graphics.drawLine(bounds.x, y, bounds.x + bounds.width, y);
+            graphics.setClip(clip);
+        }
+        graphics.setStroke(new BasicStroke(Math.max(1, margin / 3f)));
+        graphics.draw(shape);
+    }
+}
@@ -0,0 +1,48 @@
+package bguspl.set;
+
+/**
+ * This interface contains all the methods the game uses to read the time and to wait, so the game can run either in
+ * real time or in virtual time (for accelerated simulations).
+ */
+public interface Clock {
+
+    /**
+     * @return - the current time in milliseconds.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Sleeps for the given amount of time (returns immediately if it is not positive).
+     *
+     * @param millis - the time to sleep in milliseconds.
+     * @throws InterruptedException - if the thread was interrupted while sleeping.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Waits on a monitor until it is signalled or until the given amount of time passes (same as Object::wait).
+     * The calling thread must hold the monitor.
+     *
+     * @param monitor - the monitor to wait on.
+     * @param millis  - the maximal time to wait in milliseconds (0 to wait until signalled).
+     * @throws InterruptedException - if the thread was interrupted while waiting.
+     */
+    void await(Object monitor, long millis) throws InterruptedException;
+
+    /**
+     * Wakes up all the threads waiting on a monitor (same as Object::notifyAll).
+     * The calling thread must hold the monitor.
+     *
+     * @param monitor - the monitor to signal.
+     */
+    void signalAll(Object monitor);
+
+    /**
+     * Marks a task as a participant of the clock (a game thread that waits through this clock). Must be called by the
+     * thread submitting the task, before the task is submitted.
+     *
+     * @param task - the task to run.
+     * @return - the task to submit instead.
+     */
+    Runnable participant(Runnable task);
+}
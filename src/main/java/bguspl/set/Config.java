@@ -86,6 +86,98 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The number of milliseconds a computer player takes to press a key
+     */
+    public final long computerKeyPressMillis;
+
+    /**
+     * The strategies of the computer players by player id ("random" or "finder", see bguspl.set.ex.Strategy)
+     * Note: if there are more players than strategies, the remaining players play the last strategy.
+     */
+    private final String[] computerStrategies;
+
+    /**
+     * Whether the game runs in virtual time (a discrete-event clock for accelerated simulations) or in real time
+     */
+    public final boolean virtualClock;
+
+    /**
+     * Whether the games run on the single threaded stepped engine (the dealer and the computer players are state
+     * machines stepped in virtual time by a cooperative scheduler) instead of the dealer and player threads
+     */
+    public final boolean steppedEngine;
+
+    /**
+     * The seed the games are reproduced from (0 to pick a random seed, which is logged)
+     */
+    public final long seed;
+
+    /**
+     * The directory to write the recordings of the games to, named by their seeds (empty to not record the games)
+     */
+    public final String recordDirectory;
+
+    /**
+     * The file to journal the game events to in binary (empty to not journal the events)
+     */
+    public final String journalFile;
+
+    /**
+     * The maximal size of the journal file in megabytes (the events that do not fit are dropped)
+     */
+    public final long journalMegabytes;
+
+    /**
+     * The file to checkpoint the game in progress to, for resuming it with "Main --restore" (empty to not checkpoint)
+     */
+    public final String checkpointFile;
+
+    /**
+     * The number of milliseconds between two checkpoints of the game in progress
+     */
+    public final long checkpointMillis;
+
+    /**
+     * The number of games to play in a row in the same session (0 to keep playing until the window is closed)
+     */
+    public final int games;
+
+    /**
+     * The number of independent games a GameHost runs (each playing the configured number of games in a row)
+     */
+    public final int hostGames;
+
+    /**
+     * The maximal number of hosted games running at the same time (0 for the number of available processors)
+     */
+    public final int hostConcurrency;
+
+    /**
+     * The line-ups a Tournament compares: the strategies of the players of every line-up (see computerStrategy)
+     */
+    public final String[] tournamentLineups;
+
+    /**
+     * The number of games a Tournament plays with every line-up (the line-ups play the same deals)
+     */
+    public final int tournamentGames;
+
+    /**
+     * The TCP port remote players connect to, taking the seats of the human players (0 to not serve remote players)
+     */
+    public final int serverPort;
+
+    /**
+     * The named pipe (or file) to stream the game to spectators through (see SpectatorStream), empty for none
+     */
+    public final String spectatorPipe;
+
+    /**
+     * Whether to trace the latency of key presses (from the key press to the token / claim verdict) or not
+     */
+    public final boolean latencyTracing;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -132,6 +224,17 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The maximal number of times per second the window is repainted (the changes in between are painted together),
+     * between 1 and 1000
+     */
+    public final int frameRate;
+
+    /**
+     * The maximal number of scaled card images the window keeps in memory (at least twice the table size)
+     */
+    public final int cardCacheSize;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -155,7 +258,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -196,7 +299,7 @@ public class Config {
         // cards settings
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
-        deckSize = (int) Math.pow(featureSize, featureCount);
+        deckSize = deckSize(featureSize, featureCount);
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
@@ -210,7 +313,36 @@ public class Config {
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
-    
+        virtualClock = Boolean.parseBoolean(properties.getProperty("VirtualClock", "False"));
+        steppedEngine = Boolean.parseBoolean(properties.getProperty("SteppedEngine", "False"));
+        seed = Long.parseLong(properties.getProperty("Seed", "0"));
+        recordDirectory = properties.getProperty("RecordDirectory", "").trim();
+        journalFile = properties.getProperty("JournalFile", "").trim();
+        journalMegabytes = Long.parseLong(properties.getProperty("JournalMegabytes", "256"));
+        checkpointFile = properties.getProperty("CheckpointFile", "").trim();
+        checkpointMillis = (long) (Double.parseDouble(properties.getProperty("CheckpointSeconds", "5")) * 1000.0);
+        long keyPressMillis = (long) (Double.parseDouble(properties.getProperty("ComputerKeyPressSeconds", "0")) * 1000.0);
+        if ((virtualClock || steppedEngine) && keyPressMillis <= 0) {
+            logger.severe("warning: computer players must take time to press keys in virtual time, using 1 millisecond.");
+            keyPressMillis = 1;
+        }
+        computerKeyPressMillis = keyPressMillis;
+        computerStrategies = properties.getProperty("ComputerStrategies", "random").split(",");
+        Arrays.setAll(computerStrategies, i -> computerStrategies[i].trim());
+        if (virtualClock && humanPlayers > 0)
+            logger.severe("warning: running human players in virtual time, the time will not wait for them.");
+        if (steppedEngine && humanPlayers > 0)
+            logger.severe("warning: the stepped engine has no keyboard input, human players will not play.");
+        games = Integer.parseInt(properties.getProperty("Games", "1"));
+        hostGames = Integer.parseInt(properties.getProperty("HostGames", "1"));
+        int concurrency = Integer.parseInt(properties.getProperty("HostConcurrency", "0"));
+        hostConcurrency = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+        tournamentLineups = properties.getProperty("TournamentLineups", "random,finder").split(";");
+        Arrays.setAll(tournamentLineups, i -> tournamentLineups[i].trim());
+        tournamentGames = Integer.parseInt(properties.getProperty("TournamentGames", "100"));
+        serverPort = Integer.parseInt(properties.getProperty("ServerPort", "0"));
+        spectatorPipe = properties.getProperty("SpectatorPipe", "").trim();
+        latencyTracing = Boolean.parseBoolean(properties.getProperty("LatencyTracing", "False"));
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -225,6 +357,8 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        frameRate = Math.min(1000, Math.max(1, Integer.parseInt(properties.getProperty("FrameRate", "60"))));
+        cardCacheSize = Integer.parseInt(properties.getProperty("CardCacheSize", "128"));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -242,7 +376,31 @@ public class Config {
         }
     }
 
+    /**
+     * @return - the name of the strategy of the computer player with the given id.
+     */
+    public String computerStrategy(int player) {
+        return computerStrategies[Math.min(player, computerStrategies.length - 1)];
+    }
+
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
+
+    /**
+     * @return - featureSize ^ featureCount, computed exactly.
+     * @throws IllegalArgumentException - if the features do not make a deck of at most Integer.MAX_VALUE cards.
+     */
+    static int deckSize(int featureSize, int featureCount) {
+        if (featureSize < 2 || featureSize > 64 || featureCount < 1)
+            throw new IllegalArgumentException("invalid features: FeatureSize must be 2 to 64 and FeatureCount at "
+                    + "least 1, got " + featureSize + " and " + featureCount);
+        int deckSize = 1;
+        try {
+            for (int i = 0; i < featureCount; i++) deckSize = Math.multiplyExact(deckSize, featureSize);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("the deck is too large: " + featureSize + "^" + featureCount);
+        }
+        return deckSize;
+    }
 }
@@ -0,0 +1,253 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Estimates the statistics of random deals by Monte Carlo simulation: for a deck of FeatureSize ^ FeatureCount cards
+ * and a table of k cards, the distribution of the number of sets on the table (counted by Util::findSets), hence the
+ * probability that the table has no set and the expected number of sets per deal, with 95% confidence intervals.
+ * The deals are split into chunks played in parallel, and every chunk draws its cards from its own stream split off
+ * a single SplittableRandom in chunk order, so the results depend on the seed only and not on the number of threads.
+ * The command line sweeps all the combinations of comma separated values, e.g.
+ * "FeatureSize=3 FeatureCount=3,4 Cards=9,12,15,18 Deals=1000000 Seed=1 Threads=8" (the card settings default to the
+ * configuration file, the threads to config.hostConcurrency).
+ */
+public class DealAnalytics {
+
+    /**
+     * The number of deals of a chunk (the unit of work of a thread).
+     */
+    static final int CHUNK = 1 << 14;
+
+    /**
+     * The statistics of the deals of a single configuration.
+     */
+    public static class Result {
+
+        public final int featureSize;
+        public final int featureCount;
+        public final int cards;
+
+        /**
+         * The number of deals having every number of sets.
+         */
+        private final long[] sets;
+
+        private final long deals;
+        private final long elapsedNanos;
+
+        Result(int featureSize, int featureCount, int cards, long[] sets, long elapsedNanos) {
+            this.featureSize = featureSize;
+            this.featureCount = featureCount;
+            this.cards = cards;
+            this.sets = sets;
+            this.deals = Arrays.stream(sets).sum();
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long deals() {
+            return deals;
+        }
+
+        /**
+         * @return - the number of deals having exactly the given number of sets.
+         */
+        public long deals(int sets) {
+            return sets < this.sets.length ? this.sets[sets] : 0;
+        }
+
+        public double noSetProbability() {
+            return deals == 0 ? 0 : (double) deals(0) / deals;
+        }
+
+        /**
+         * @return - the half width of the 95% confidence interval of the probability of no set.
+         */
+        public double noSetHalfWidth() {
+            double p = noSetProbability();
+            return deals == 0 ? 0 : 1.96 * Math.sqrt(p * (1 - p) / deals);
+        }
+
+        public double meanSets() {
+            double sum = 0;
+            for (int count = 0; count < sets.length; count++) sum += (double) count * sets[count];
+            return deals == 0 ? 0 : sum / deals;
+        }
+
+        /**
+         * @return - the half width of the 95% confidence interval of the expected number of sets per deal.
+         */
+        public double meanSetsHalfWidth() {
+            if (deals < 2) return 0;
+            double mean = meanSets(), squares = 0;
+            for (int count = 0; count < sets.length; count++) squares += (count - mean) * (count - mean) * sets[count];
+            return 1.96 * Math.sqrt(squares / (deals - 1) / deals);
+        }
+
+        /**
+         * @return - a human readable report of the statistics and the distribution of the number of sets.
+         */
+        public String report() {
+            double seconds = Math.max(elapsedNanos, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+            StringBuilder sb = new StringBuilder(String.format("FeatureSize=%d FeatureCount=%d Cards=%d: %d deals in "
+                            + "%.3f seconds (%.0f deals/sec), no set %.4f%% +- %.4f%%, sets/deal %.4f +- %.4f%n  sets:",
+                    featureSize, featureCount, cards, deals, seconds, deals / seconds, noSetProbability() * 100,
+                    noSetHalfWidth() * 100, meanSets(), meanSetsHalfWidth()));
+            for (int count = 0; count < sets.length; count++)
+                if (sets[count] != 0) sb.append(String.format(" %d:%.3f%%", count, 100.0 * sets[count] / deals));
+            return sb.toString();
+        }
+    }
+
+    private final Logger logger;
+
+    /**
+     * The threads playing the chunks of deals.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * The seed of the streams of every configuration.
+     */
+    private final long seed;
+
+    public DealAnalytics(Logger logger, int threads, long seed) {
+        this.logger = logger;
+        this.workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "analytics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.seed = seed;
+    }
+
+    /**
+     * Deals random tables and counts their sets.
+     *
+     * @param featureSize  - the number of choices of every feature.
+     * @param featureCount - the number of features of a card.
+     * @param cards        - the number of cards on the table.
+     * @param deals        - the number of tables to deal.
+     * @return - the statistics of the deals.
+     * @throws IllegalArgumentException - if the table is larger than the deck.
+     * @throws InterruptedException     - if interrupted while waiting for the deals.
+     */
+    public Result analyze(int featureSize, int featureCount, int cards, long deals) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("FeatureSize", Integer.toString(featureSize));
+        properties.setProperty("FeatureCount", Integer.toString(featureCount));
+        properties.setProperty("Rows", "1");
+        properties.setProperty("Columns", Integer.toString(cards));
+        properties.setProperty("HumanPlayers", "0");
+        Config config = new Config(logger, properties);
+        if (cards < 0 || cards > config.deckSize)
+            throw new IllegalArgumentException(cards + " cards do not fit a deck of " + config.deckSize);
+        Util util = new UtilImpl(config);
+
+        long start = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Future<long[]>> chunks = new ArrayList<>();
+        for (long dealt = 0; dealt < deals; dealt += CHUNK) {
+            SplittableRandom stream = random.split();
+            int chunk = (int) Math.min(CHUNK, deals - dealt);
+            chunks.add(workers.submit(() -> deal(util, config.deckSize, cards, chunk, stream)));
+        }
+        long[] sets = new long[1];
+        for (Future<long[]> chunk : chunks) {
+            try {
+                long[] counts = chunk.get();
+                if (counts.length > sets.length) sets = Arrays.copyOf(sets, counts.length);
+                for (int count = 0; count < counts.length; count++) sets[count] += counts[count];
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("deal analytics failed", e.getCause());
+            }
+        }
+        return new Result(featureSize, featureCount, cards, sets, System.nanoTime() - start);
+    }
+
+    /**
+     * Deals a chunk of random tables (the first cards of a partial shuffle of the deck) and counts their sets.
+     *
+     * @return - the number of tables having every number of sets.
+     */
+    private static long[] deal(Util util, int deckSize, int cards, int deals, SplittableRandom random) {
+        int[] deck = new int[deckSize];
+        for (int card = 0; card < deckSize; card++) deck[card] = card;
+        List<Integer> table = new ArrayList<>(cards);
+        long[] sets = new long[8];
+        for (int deal = 0; deal < deals; deal++) {
+            table.clear();
+            for (int i = 0; i < cards; i++) {
+                int j = i + random.nextInt(deckSize - i);
+                int card = deck[j];
+                deck[j] = deck[i];
+                deck[i] = card;
+                table.add(card);
+            }
+            int count = util.findSets(table, Integer.MAX_VALUE).size();
+            if (count >= sets.length) sets = Arrays.copyOf(sets, Math.max(count + 1, sets.length * 2));
+            sets[count]++;
+        }
+        return sets;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private static int[] values(Properties properties, String key, int defaultValue) {
+        String[] values = properties.getProperty(key, Integer.toString(defaultValue)).split(",");
+        int[] parsed = new int[values.length];
+        for (int i = 0; i < values.length; i++) parsed[i] = Integer.parseInt(values[i].trim());
+        return parsed;
+    }
+
+    /**
+     * The analytics' main function.
+     *
+     * @param args - the configurations to sweep, as Key=Value,Value... (FeatureSize, FeatureCount, Cards), and
+     *             Deals, Seed and Threads.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Logger logger = Logger.getLogger("SetGameAnalytics");
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, "config.properties");
+        Properties sweep = new Properties();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals > 0) sweep.setProperty(arg.substring(0, equals).trim(), arg.substring(equals + 1).trim());
+            else System.err.println("ignoring " + arg + " (expected Key=Value)");
+        }
+        long deals = Long.parseLong(sweep.getProperty("Deals", "1000000"));
+        long seed = Long.parseLong(sweep.getProperty("Seed", Long.toString(config.seed)));
+        if (seed == 0) seed = new SplittableRandom().nextLong();
+        int threads = Integer.parseInt(sweep.getProperty("Threads", Integer.toString(config.hostConcurrency)));
+        System.out.println("seed: " + seed);
+
+        DealAnalytics analytics = new DealAnalytics(logger, Math.max(threads, 1), seed);
+        for (int featureSize : values(sweep, "FeatureSize", config.featureSize))
+            for (int featureCount : values(sweep, "FeatureCount", config.featureCount))
+                for (int cards : values(sweep, "Cards", config.tableSize)) {
+                    try {
+                        System.out.println(analytics.analyze(featureSize, featureCount, cards, deals).report());
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("FeatureSize=" + featureSize + " FeatureCount=" + featureCount + " Cards="
+                                + cards + ": " + e.getMessage());
+                    }
+                }
+        analytics.shutdown();
+    }
+}
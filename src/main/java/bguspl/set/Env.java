@@ -1,18 +1,105 @@
 package bguspl.set;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 public class Env {
 
     public final Logger logger;
+
+    /**
+     * Logs the frequent events of the game without building their messages on the game threads.
+     */
+    public final AsyncLog log;
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final LatencyTracker latency;
+
+    /**
+     * The thread pool running the dealer, the players and the computer players (reused between games).
+     */
+    public final ExecutorService executor;
+
+    /**
+     * The throughput counters of the game (may be shared by several games to aggregate them).
+     */
+    public final GameStats stats;
+
+    /**
+     * The clock the game reads the time from and waits through (real or virtual time).
+     */
+    public final Clock clock;
+
+    /**
+     * The binary journal of the game events (disabled unless a journal file is given).
+     */
+    public final EventJournal journal;
+
+    /**
+     * The scores of the players of the current game, in standings order (reset by every new table).
+     */
+    public final Leaderboard leaderboard;
+
+    /**
+     * The runtime metrics of the games, exposed over JMX once registered (see GameMetrics::register).
+     */
+    public final GameMetrics metrics;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, newWorkerPool(), new GameStats(), newClock(config));
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, ExecutorService executor, GameStats stats,
+               Clock clock) {
+        this(logger, config, ui, util, executor, stats, clock, null);
+    }
+
+    /**
+     * @param journalFile - the file to journal the game events to (may be shared by several environments), or null.
+     */
+    public Env(Logger logger, Config config, UserInterface ui, Util util, ExecutorService executor, GameStats stats,
+               Clock clock, JournalFile journalFile) {
         this.logger = logger;
+        this.log = AsyncLog.of(logger);
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.latency = new LatencyTracker(config.latencyTracing);
+        this.executor = executor;
+        this.stats = stats;
+        this.clock = clock;
+        this.journal = new EventJournal(journalFile, clock);
+        this.leaderboard = new Leaderboard(config.players, ui);
+        this.metrics = new GameMetrics(logger, config.players);
+    }
+
+    /**
+     * @param config - the game configuration.
+     * @return - a new clock of the configured kind (a StepClock if config.steppedEngine, a VirtualClock if
+     * config.virtualClock, a RealClock otherwise).
+     */
+    public static Clock newClock(Config config) {
+        if (config.steppedEngine) return new StepClock();
+        return config.virtualClock ? new VirtualClock() : new RealClock();
+    }
+
+    /**
+     * Creates a thread pool for the game threads. The pool grows as needed (dealer and player threads block for long
+     * periods), keeps idle threads for reuse by the next game, and its threads never keep the JVM alive by themselves.
+     *
+     * @return - the new thread pool.
+     */
+    public static ExecutorService newWorkerPool() {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
     }
 }
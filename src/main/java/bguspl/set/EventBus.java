@@ -0,0 +1,444 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Decouples the game engine from the observers of the game (the Swing window, the log etc.): the engine calls the
+ * UserInterface methods of the bus, which only update the latest state of the game and put an event into a ring buffer
+ * of preallocated slots, and return. Every consumer has its own thread, which replays the events, in the order they
+ * were published, on the consumer's UserInterface, so a slow consumer never delays the dealer and player threads or
+ * the other consumers: publishing never waits for the consumers, it overwrites the oldest event of the buffer.
+ * A consumer that falls a whole buffer behind (overrun) skips the events it missed and resynchronizes instead, by
+ * resetting its UserInterface and redrawing the latest state (the cards and tokens of every slot, the scores, freezes
+ * and winners), then goes on from the events published since. The countdown and elapsed time ticks are not kept in
+ * the latest state, since the next tick repeats them.
+ */
+public class EventBus implements UserInterface {
+
+    /**
+     * The types of the events (one for each UserInterface method).
+     */
+    private enum Type {
+        PLACE_CARD, REMOVE_CARD, PLACE_TOKEN, REMOVE_TOKENS, REMOVE_SLOT_TOKENS, REMOVE_TOKEN, COUNTDOWN, ELAPSED,
+        FREEZE, SCORE, WINNER, RESET, DISPOSE
+    }
+
+    /**
+     * A slot of the ring buffer. The fields are volatile, so a consumer that read an event can tell by the sequence
+     * whether a publisher overwrote the event meanwhile.
+     */
+    private static class Slot {
+
+        /**
+         * The sequence number of the event in the slot plus 1, negated while the publishing thread fills the slot.
+         */
+        volatile long sequence;
+
+        volatile Type type;
+        volatile int first, second;
+        volatile long millies;
+        volatile boolean warn;
+        volatile int[] players;
+    }
+
+    private static final AtomicLongFieldUpdater<Slot> SEQUENCE =
+            AtomicLongFieldUpdater.newUpdater(Slot.class, "sequence");
+
+    /**
+     * The latest state of the game, as published so far (the consumers that were overrun redraw it).
+     */
+    private static class State {
+        final int[] cards;          // the card per slot (-1 if none)
+        final boolean[][] tokens;   // the tokens per slot and player
+        final long[] freezes;
+        final int[] scores;
+        int[] winners;              // null while the game is played
+        boolean disposed;
+
+        State(Config config) {
+            cards = new int[config.tableSize];
+            Arrays.fill(cards, -1);
+            tokens = new boolean[config.tableSize][config.players];
+            freezes = new long[config.players];
+            scores = new int[config.players];
+        }
+
+        State(State state) {
+            cards = state.cards.clone();
+            tokens = new boolean[state.tokens.length][];
+            for (int slot = 0; slot < tokens.length; slot++) tokens[slot] = state.tokens[slot].clone();
+            freezes = state.freezes.clone();
+            scores = state.scores.clone();
+            winners = state.winners;
+            disposed = state.disposed;
+        }
+
+        void apply(Type type, int first, int second, long millies, int[] players) {
+            switch (type) {
+                case PLACE_CARD:
+                    cards[second] = first;
+                    break;
+                case REMOVE_CARD:
+                    cards[second] = -1;
+                    break;
+                case PLACE_TOKEN:
+                    tokens[second][first] = true;
+                    break;
+                case REMOVE_TOKENS:
+                    for (boolean[] slot : tokens) Arrays.fill(slot, false);
+                    break;
+                case REMOVE_SLOT_TOKENS:
+                    Arrays.fill(tokens[second], false);
+                    break;
+                case REMOVE_TOKEN:
+                    tokens[second][first] = false;
+                    break;
+                case FREEZE:
+                    freezes[first] = millies;
+                    break;
+                case SCORE:
+                    scores[first] = second;
+                    break;
+                case WINNER:
+                    winners = players;
+                    break;
+                case RESET:
+                    Arrays.fill(cards, -1);
+                    for (boolean[] slot : tokens) Arrays.fill(slot, false);
+                    Arrays.fill(freezes, 0);
+                    Arrays.fill(scores, 0);
+                    winners = null;
+                    break;
+                case DISPOSE:
+                    disposed = true;
+                    break;
+                default: // the ticks are repeated anyway
+                    break;
+            }
+        }
+
+        /**
+         * Redraws the state on a user interface from scratch.
+         */
+        void redraw(UserInterface ui) {
+            ui.reset();
+            for (int slot = 0; slot < cards.length; slot++) {
+                if (cards[slot] != -1) ui.placeCard(cards[slot], slot);
+                for (int player = 0; player < tokens[slot].length; player++)
+                    if (tokens[slot][player]) ui.placeToken(player, slot);
+            }
+            for (int player = 0; player < scores.length; player++) {
+                ui.setScore(player, scores[player]);
+                if (freezes[player] > 0) ui.setFreeze(player, freezes[player]);
+            }
+            if (winners != null) ui.announceWinner(winners);
+        }
+    }
+
+    /**
+     * A consumer of the events: a UserInterface and the thread replaying the events on it.
+     */
+    private class Consumer implements Runnable {
+
+        final String name;
+        final UserInterface ui;
+        final Thread thread;
+
+        /**
+         * The event being replayed (copied out of the ring buffer, so publishers can overwrite its slot).
+         */
+        final Slot event = new Slot();
+
+        /**
+         * The largest number of events the consumer was behind the engine.
+         */
+        long maxLag;
+
+        /**
+         * The number of times the consumer was overrun and resynchronized.
+         */
+        volatile long overruns;
+
+        Consumer(String name, UserInterface ui) {
+            this.name = name;
+            this.ui = ui;
+            this.thread = new Thread(this, "event-bus-" + name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = 0;
+            while (true) {
+                Slot slot = slots[(int) next & mask];
+                long sequence = slot.sequence;
+                if (sequence == next + 1) {
+                    event.type = slot.type;
+                    event.first = slot.first;
+                    event.second = slot.second;
+                    event.millies = slot.millies;
+                    event.warn = slot.warn;
+                    event.players = slot.players;
+                    if (slot.sequence == next + 1) { // not overwritten while copied
+                        maxLag = Math.max(maxLag, published() - next);
+                        replay(event);
+                        if (event.type == Type.DISPOSE) return;
+                        next++;
+                        continue;
+                    }
+                } else if (Math.abs(sequence) <= next + 1) { // not published yet
+                    LockSupport.parkNanos(1_000_000);
+                    continue;
+                }
+                // overrun: the events the consumer missed were overwritten
+                overruns++;
+                next = published();
+                State latest;
+                synchronized (state) {
+                    latest = new State(state);
+                }
+                try {
+                    latest.redraw(ui);
+                    if (latest.disposed) ui.dispose();
+                } catch (RuntimeException e) {
+                    logger.severe("event bus consumer " + name + " failed to resynchronize: " + e);
+                }
+                if (latest.disposed) return;
+            }
+        }
+
+        private void replay(Slot event) {
+            try {
+                dispatch(event, ui);
+            } catch (RuntimeException e) {
+                logger.severe("event bus consumer " + name + " failed on " + event.type + ": " + e);
+            }
+        }
+    }
+
+    private final Logger logger;
+
+    private final Slot[] slots;
+
+    private final int mask;
+
+    private final Consumer[] consumers;
+
+    /**
+     * The number of slots claimed by the engine so far.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /**
+     * The latest state of the game.
+     */
+    private final State state;
+
+    /**
+     * @param logger    - the logger to report the failures of the consumers to.
+     * @param config    - the game configuration (the table size and the number of players).
+     * @param capacity  - the number of events the buffer holds (rounded up to a power of 2).
+     * @param names     - the names of the consumers.
+     * @param consumers - the user interfaces replaying the events.
+     */
+    public EventBus(Logger logger, Config config, int capacity, String[] names, UserInterface... consumers) {
+        this.logger = logger;
+        this.state = new State(config);
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) slots[i] = new Slot();
+        mask = size - 1;
+        this.consumers = new Consumer[consumers.length];
+        for (int i = 0; i < consumers.length; i++) this.consumers[i] = new Consumer(names[i], consumers[i]);
+        for (Consumer consumer : this.consumers) consumer.thread.start();
+    }
+
+    /**
+     * Updates the latest state and puts an event into the next slot of the ring buffer, overwriting the oldest event.
+     * The state is updated first, so a consumer that resynchronizes from the state already sees every event published
+     * before the position it goes on from. Never waits for the consumers (only, very briefly, for another publisher
+     * still filling the same slot a whole buffer earlier).
+     */
+    private void publish(Type type, int first, int second, long millies, boolean warn, int[] players) {
+        if (type != Type.COUNTDOWN && type != Type.ELAPSED) {
+            synchronized (state) {
+                state.apply(type, first, second, millies, players);
+            }
+        }
+        long sequence = claimed.getAndIncrement();
+        Slot slot = slots[(int) sequence & mask];
+        long current;
+        do {
+            current = slot.sequence;
+            if (Math.abs(current) > sequence + 1) return; // a later event already took the slot (the consumers resync)
+            if (current < 0) Thread.yield();
+        } while (current < 0 || !SEQUENCE.compareAndSet(slot, current, -sequence - 1));
+        slot.type = type;
+        slot.first = first;
+        slot.second = second;
+        slot.millies = millies;
+        slot.warn = warn;
+        slot.players = players;
+        slot.sequence = sequence + 1;
+    }
+
+    /**
+     * @return - the number of events published so far (including the ones still being filled).
+     */
+    private long published() {
+        return claimed.get();
+    }
+
+    private static void dispatch(Slot slot, UserInterface ui) {
+        switch (slot.type) {
+            case PLACE_CARD:
+                ui.placeCard(slot.first, slot.second);
+                break;
+            case REMOVE_CARD:
+                ui.removeCard(slot.second);
+                break;
+            case PLACE_TOKEN:
+                ui.placeToken(slot.first, slot.second);
+                break;
+            case REMOVE_TOKENS:
+                ui.removeTokens();
+                break;
+            case REMOVE_SLOT_TOKENS:
+                ui.removeTokens(slot.second);
+                break;
+            case REMOVE_TOKEN:
+                ui.removeToken(slot.first, slot.second);
+                break;
+            case COUNTDOWN:
+                ui.setCountdown(slot.millies, slot.warn);
+                break;
+            case ELAPSED:
+                ui.setElapsed(slot.millies);
+                break;
+            case FREEZE:
+                ui.setFreeze(slot.first, slot.millies);
+                break;
+            case SCORE:
+                ui.setScore(slot.first, slot.second);
+                break;
+            case WINNER:
+                ui.announceWinner(slot.players);
+                break;
+            case RESET:
+                ui.reset();
+                break;
+            case DISPOSE:
+                ui.dispose();
+                break;
+        }
+    }
+
+    private void publish(Type type, int first, int second) {
+        publish(type, first, second, 0, false, null);
+    }
+
+    private void publish(Type type, int first, long millies, boolean warn) {
+        publish(type, first, -1, millies, warn, null);
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        publish(Type.PLACE_CARD, card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        publish(Type.REMOVE_CARD, -1, slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        publish(Type.PLACE_TOKEN, player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        publish(Type.REMOVE_TOKENS, -1, -1);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        publish(Type.REMOVE_SLOT_TOKENS, -1, slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        publish(Type.REMOVE_TOKEN, player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        publish(Type.COUNTDOWN, -1, millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        publish(Type.ELAPSED, -1, millies, false);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        publish(Type.FREEZE, player, millies, false);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        publish(Type.SCORE, player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        publish(Type.WINNER, -1, -1, 0, false, players.clone());
+    }
+
+    @Override
+    public void reset() {
+        publish(Type.RESET, -1, -1);
+    }
+
+    /**
+     * Disposes of the consumers once they replayed all the events, and waits for them to finish.
+     */
+    @Override
+    public void dispose() {
+        publish(Type.DISPOSE, -1, -1);
+        for (Consumer consumer : consumers) {
+            try {
+                consumer.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        logger.info("event bus: " + report());
+    }
+
+    /**
+     * @return - the number of times a consumer was overrun (fell a whole buffer behind) and resynchronized.
+     */
+    public long overruns() {
+        long overruns = 0;
+        for (Consumer consumer : consumers) overruns += consumer.overruns;
+        return overruns;
+    }
+
+    /**
+     * @return - the number of events published, and how far behind each consumer fell.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder().append(published()).append(" events");
+        for (Consumer consumer : consumers)
+            report.append(", ").append(consumer.name).append(" max lag ").append(consumer.maxLag).append(" overruns ")
+                    .append(consumer.overruns);
+        return report.toString();
+    }
+}
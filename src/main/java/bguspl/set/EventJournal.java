@@ -0,0 +1,111 @@
+package bguspl.set;
+
+/**
+ * Writes the events of the games of an environment to a shared binary journal (see JournalFile), timed by both the
+ * system nano clock and the game clock. Every event is one fixed-size record appended without locking, so it can be
+ * written from the synchronized paths of the table, the dealer and the players. When no journal file is configured
+ * (see JournalFile in config.properties) every method returns immediately.
+ * The journal files are read by bguspl.set.JournalReader.
+ * <p>
+ * Record layout (big-endian, JournalFile.RECORD_SIZE bytes):
+ * type (byte), reserved (byte), player (short), slot (short), reserved (short), nano time since the file was opened
+ * (long), game clock time (long), game id (int), value (int: the card, the verdict, the freeze or the deck size).
+ * The player, slot and value are -1 when the event has none.
+ */
+public class EventJournal {
+
+    /**
+     * The types of the journal records (by their byte value, 0 is never written).
+     */
+    public enum Type {
+        GAME_START,   // a table was created for a new game
+        PLACE_CARD,   // slot, card
+        REMOVE_CARD,  // slot, card
+        PLACE_TOKEN,  // player, slot
+        REMOVE_TOKEN, // player, slot
+        CLAIM,        // player, 1 if the set was legal or 0 if not
+        FREEZE,       // player, freeze time in milliseconds
+        RESHUFFLE;    // the number of cards in the deck after returning the table cards
+
+        /**
+         * @return - the byte value of the type in the journal file.
+         */
+        public byte code() {
+            return (byte) (ordinal() + 1);
+        }
+
+        /**
+         * @return - the type of the given byte value, or null if there is none.
+         */
+        public static Type of(byte code) {
+            return code > 0 && code <= values().length ? values()[code - 1] : null;
+        }
+    }
+
+    /**
+     * The journal file written to (null if disabled).
+     */
+    private final JournalFile file;
+
+    /**
+     * The clock of the games of the environment.
+     */
+    private final Clock clock;
+
+    /**
+     * @param file  - the journal file to write to, or null to not journal the events.
+     * @param clock - the clock of the games.
+     */
+    public EventJournal(JournalFile file, Clock clock) {
+        this.file = file;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Journals the start of a game.
+     *
+     * @return - the id of the game in the journal (0 if disabled).
+     */
+    public int gameStarted() {
+        if (file == null) return 0;
+        int game = file.newGame();
+        write(Type.GAME_START, game, -1, -1, -1);
+        return game;
+    }
+
+    public void placeCard(int game, int card, int slot) {
+        if (file != null) write(Type.PLACE_CARD, game, -1, slot, card);
+    }
+
+    public void removeCard(int game, int card, int slot) {
+        if (file != null) write(Type.REMOVE_CARD, game, -1, slot, card);
+    }
+
+    public void placeToken(int game, int player, int slot) {
+        if (file != null) write(Type.PLACE_TOKEN, game, player, slot, -1);
+    }
+
+    public void removeToken(int game, int player, int slot) {
+        if (file != null) write(Type.REMOVE_TOKEN, game, player, slot, -1);
+    }
+
+    public void claim(int game, int player, boolean legal) {
+        if (file != null) write(Type.CLAIM, game, player, -1, legal ? 1 : 0);
+    }
+
+    public void freeze(int game, int player, long millis) {
+        if (file != null) write(Type.FREEZE, game, player, -1, (int) Math.min(millis, Integer.MAX_VALUE));
+    }
+
+    public void reshuffle(int game, int deckSize) {
+        if (file != null) write(Type.RESHUFFLE, game, -1, -1, deckSize);
+    }
+
+    private void write(Type type, int game, int player, int slot, int value) {
+        file.append(type.code(), file.elapsedNanos(), clock.currentTimeMillis(), game, player, slot, value);
+    }
+}
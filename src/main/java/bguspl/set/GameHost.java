@@ -0,0 +1,154 @@
+package bguspl.set;
+
+import bguspl.set.ex.GameSession;
+import bguspl.set.ex.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent games in a single JVM (for computer players, no user interface).
+ * Every hosted game has its own environment, table, dealer and players; the games share the worker thread pool and
+ * the throughput counters, so the host can report the aggregate throughput of all of its games.
+ */
+public class GameHost {
+
+    private final Logger logger;
+    private final Config config;
+
+    /**
+     * The aggregate throughput counters of all hosted games.
+     */
+    private final GameStats stats = new GameStats();
+
+    /**
+     * The pool running the dealer, player and computer player threads of all the hosted games.
+     */
+    private final ExecutorService workers = Env.newWorkerPool();
+
+    /**
+     * The pool running the hosted game sessions (sized to config.hostConcurrency, so at most that many games run at
+     * the same time and the rest wait for a free runner).
+     */
+    private final ExecutorService runners;
+
+    /**
+     * The event journal file shared by all the hosted games (null if not configured).
+     */
+    private final JournalFile journalFile;
+
+    /**
+     * The sessions of the hosted games.
+     */
+    private final List<GameSession> sessions = new ArrayList<>();
+
+    /**
+     * The source of the seeds of the hosted sessions (seeded with config.seed, unless it is 0).
+     */
+    private final Random seeds;
+
+    /**
+     * True iff the host should be terminated.
+     */
+    private volatile boolean terminate;
+
+    /**
+     * The time it took to run all the hosted games.
+     */
+    private long elapsedNanos;
+
+    public GameHost(Logger logger, Config config) {
+        this.logger = logger;
+        this.config = config;
+        this.runners = Executors.newFixedThreadPool(config.hostConcurrency);
+        this.seeds = config.seed != 0 ? new Random(config.seed) : new Random();
+        this.journalFile = JournalFile.open(config, logger);
+        if (config.humanPlayers > 0)
+            logger.severe("warning: hosted games have no user interface, human players will not play");
+    }
+
+    /**
+     * Runs config.hostGames games and waits for all of them to finish.
+     */
+    public void run() {
+        long start = System.nanoTime();
+        List<Future<?>> games = new ArrayList<>();
+        for (int game = 0; game < config.hostGames && !terminate; game++) {
+            GameSession session = createGame();
+            synchronized (sessions) {
+                sessions.add(session);
+            }
+            games.add(ThreadLogger.submitWithLog(runners, session, "game-" + (game + 1), logger));
+        }
+
+        for (int game = 0; game < games.size(); game++) {
+            try {
+                games.get(game).get();
+            } catch (InterruptedException e) {
+                terminate();
+            } catch (ExecutionException e) { // one failed game does not affect the others
+                logger.severe("hosted game " + (game + 1) + " failed: " + e.getCause());
+            }
+        }
+        runners.shutdown();
+        workers.shutdown();
+        elapsedNanos = System.nanoTime() - start;
+        if (journalFile != null) journalFile.close(logger);
+        logger.severe("host finished: " + report());
+    }
+
+    /**
+     * Creates the isolated environment of a single hosted game.
+     */
+    private GameSession createGame() {
+        Util util = new UtilImpl(config);
+        UserInterface ui = UserInterfaceDecorator.logOnly(logger, util);
+        Env env = new Env(logger, config, ui, util, workers, stats, Env.newClock(config), journalFile);
+        return new GameSession(env, new Player[config.players], seeds.nextLong());
+    }
+
+    /**
+     * Terminates all the hosted games.
+     */
+    public void terminate() {
+        terminate = true;
+        synchronized (sessions) {
+            for (int i = sessions.size() - 1; i >= 0; i--)
+                sessions.get(i).terminate();
+        }
+    }
+
+    public GameStats stats() {
+        return stats;
+    }
+
+    /**
+     * @return - the aggregate throughput of the hosted games.
+     */
+    public String report() {
+        return stats.report(elapsedNanos);
+    }
+
+    /**
+     * The host's main function.
+     *
+     * @param args - unused.
+     */
+    public static void main(String[] args) {
+        Logger logger = Main.initLogger();
+        Config config = new Config(logger, "config.properties");
+        GameHost host = new GameHost(logger, config);
+        Runtime.getRuntime().addShutdownHook(new Thread(host::terminate));
+
+        host.run();
+        System.out.println("Hosted " + config.hostGames + " games: " + host.report());
+        for (Handler h : logger.getHandlers()) h.flush();
+    }
+}
@@ -0,0 +1,383 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * The runtime metrics of the games of an environment (kept across the games of a session), exposed over JMX as the
+ * MBeans bguspl.set:type=Dealer, bguspl.set:type=Table and bguspl.set:type=Player,id=N (see register).
+ * The counters are striped (LongAdder / LongAccumulator), so the dealer and player threads update them without
+ * contending; the gauges (queue depths, freezes left) are read from the current players only when JMX asks for them.
+ */
+public class GameMetrics {
+
+    /**
+     * The attributes of the dealer MBean.
+     */
+    public interface DealerMXBean {
+        long getClaimsSubmitted();
+
+        long getClaimsAccepted();
+
+        long getClaimsRejected();
+
+        long getClaimValidations();
+
+        long getClaimValidationP50Micros();
+
+        long getClaimValidationP99Micros();
+
+        long getClaimValidationMaxMicros();
+
+        long getMonitorWaitMillis();
+
+        long getMonitorWaitMaxMicros();
+
+        long getReshuffles();
+
+        long getReshuffleMillis();
+
+        long getReshuffleMaxMillis();
+
+        long getSetsCollected();
+
+        double getSetsPerMinute();
+    }
+
+    /**
+     * The attributes of the table MBean.
+     */
+    public interface TableMXBean {
+        long getMonitorEntries();
+
+        long getMonitorWaitMillis();
+
+        long getMonitorWaitMaxMicros();
+    }
+
+    /**
+     * The attributes of a player MBean.
+     */
+    public interface PlayerMXBean {
+        long getClaimsSubmitted();
+
+        long getClaimsAccepted();
+
+        long getClaimsRejected();
+
+        int getQueueDepth();
+
+        long getFreezeMillis();
+
+        long getFreezeLeftMillis();
+    }
+
+    private final Logger logger;
+
+    private final LongAdder[] claimsSubmitted, claimsAccepted, claimsRejected, freezeMillis;
+
+    /**
+     * The time from the dealer lock request to the verdict of the claims that had to be validated by the dealer.
+     */
+    private final LatencyHistogram claimValidation = new LatencyHistogram();
+
+    private final LongAdder dealerWaitNanos = new LongAdder(), tableWaitNanos = new LongAdder();
+    private final LongAdder tableEntries = new LongAdder();
+    private final LongAccumulator dealerWaitMax = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator tableWaitMax = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder reshuffles = new LongAdder(), reshuffleNanos = new LongAdder();
+    private final LongAccumulator reshuffleMax = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder sets = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The key press queue depth and the freeze left of the current player of every seat (null before the first game).
+     */
+    private final AtomicReferenceArray<IntSupplier> queueDepths;
+    private final AtomicReferenceArray<LongSupplier> freezesLeft;
+
+    /**
+     * The names of the registered MBeans.
+     */
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    public GameMetrics(Logger logger, int players) {
+        this.logger = logger;
+        claimsSubmitted = adders(players);
+        claimsAccepted = adders(players);
+        claimsRejected = adders(players);
+        freezeMillis = adders(players);
+        queueDepths = new AtomicReferenceArray<>(players);
+        freezesLeft = new AtomicReferenceArray<>(players);
+    }
+
+    private static LongAdder[] adders(int players) {
+        LongAdder[] adders = new LongAdder[players];
+        for (int player = 0; player < players; player++) adders[player] = new LongAdder();
+        return adders;
+    }
+
+    /**
+     * Called by a new player, so its gauges are read from now on.
+     */
+    public void watchPlayer(int player, IntSupplier queueDepth, LongSupplier freezeLeft) {
+        queueDepths.set(player, queueDepth);
+        freezesLeft.set(player, freezeLeft);
+    }
+
+    public void claimSubmitted(int player) {
+        claimsSubmitted[player].increment();
+    }
+
+    /**
+     * Called when the verdict of a claim reached the player.
+     */
+    public void claimJudged(int player, boolean accepted) {
+        if (accepted) {
+            claimsAccepted[player].increment();
+            sets.increment();
+        } else {
+            claimsRejected[player].increment();
+        }
+    }
+
+    /**
+     * @param nanos - the time from the dealer lock request to the verdict.
+     */
+    public void claimValidated(long nanos) {
+        claimValidation.record(nanos);
+    }
+
+    /**
+     * @param nanos - the time a claim waited to enter the dealer monitor.
+     */
+    public void dealerMonitorWaited(long nanos) {
+        dealerWaitNanos.add(nanos);
+        dealerWaitMax.accumulate(nanos);
+    }
+
+    /**
+     * @param nanos - the time a thread waited to enter the table monitor.
+     */
+    public void tableMonitorWaited(long nanos) {
+        tableEntries.increment();
+        tableWaitNanos.add(nanos);
+        tableWaitMax.accumulate(nanos);
+    }
+
+    /**
+     * @param nanos - the time the reshuffle took (clearing, shuffling and redealing the table).
+     */
+    public void reshuffled(long nanos) {
+        reshuffles.increment();
+        reshuffleNanos.add(nanos);
+        reshuffleMax.accumulate(nanos);
+    }
+
+    public void frozen(int player, long millis) {
+        freezeMillis[player].add(millis);
+    }
+
+    /**
+     * Registers the MBeans on the platform MBean server (a failure is logged and the metrics are still counted).
+     */
+    public void register() {
+        try {
+            register("bguspl.set:type=Dealer", new StandardMBean(new Dealer(), DealerMXBean.class, true));
+            register("bguspl.set:type=Table", new StandardMBean(new Table(), TableMXBean.class, true));
+            for (int player = 0; player < claimsSubmitted.length; player++)
+                register("bguspl.set:type=Player,id=" + (player + 1),
+                        new StandardMBean(new Player(player), PlayerMXBean.class, true));
+        } catch (JMException e) {
+            logger.severe("cannot register the game metrics: " + e);
+        }
+    }
+
+    private void register(String name, StandardMBean bean) throws JMException {
+        ObjectName objectName = new ObjectName(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+        server.registerMBean(bean, objectName);
+        synchronized (registered) {
+            registered.add(objectName);
+        }
+    }
+
+    /**
+     * Unregisters the MBeans registered by register.
+     */
+    public void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        synchronized (registered) {
+            for (ObjectName name : registered) {
+                try {
+                    server.unregisterMBean(name);
+                } catch (JMException e) {
+                    logger.warning("cannot unregister " + name + ": " + e);
+                }
+            }
+            registered.clear();
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static long sum(LongAdder[] adders) {
+        long sum = 0;
+        for (LongAdder adder : adders) sum += adder.sum();
+        return sum;
+    }
+
+    private class Dealer implements DealerMXBean {
+
+        @Override
+        public long getClaimsSubmitted() {
+            return sum(claimsSubmitted);
+        }
+
+        @Override
+        public long getClaimsAccepted() {
+            return sum(claimsAccepted);
+        }
+
+        @Override
+        public long getClaimsRejected() {
+            return sum(claimsRejected);
+        }
+
+        @Override
+        public long getClaimValidations() {
+            return claimValidation.count();
+        }
+
+        @Override
+        public long getClaimValidationP50Micros() {
+            return micros(claimValidation.percentile(50));
+        }
+
+        @Override
+        public long getClaimValidationP99Micros() {
+            return micros(claimValidation.percentile(99));
+        }
+
+        @Override
+        public long getClaimValidationMaxMicros() {
+            return micros(claimValidation.max());
+        }
+
+        @Override
+        public long getMonitorWaitMillis() {
+            return millis(dealerWaitNanos.sum());
+        }
+
+        @Override
+        public long getMonitorWaitMaxMicros() {
+            return micros(dealerWaitMax.get());
+        }
+
+        @Override
+        public long getReshuffles() {
+            return reshuffles.sum();
+        }
+
+        @Override
+        public long getReshuffleMillis() {
+            return millis(reshuffleNanos.sum());
+        }
+
+        @Override
+        public long getReshuffleMaxMillis() {
+            return millis(reshuffleMax.get());
+        }
+
+        @Override
+        public long getSetsCollected() {
+            return sets.sum();
+        }
+
+        @Override
+        public double getSetsPerMinute() {
+            double minutes = (System.nanoTime() - startNanos) / (double) TimeUnit.MINUTES.toNanos(1);
+            return minutes > 0 ? sets.sum() / minutes : 0;
+        }
+    }
+
+    private class Table implements TableMXBean {
+
+        @Override
+        public long getMonitorEntries() {
+            return tableEntries.sum();
+        }
+
+        @Override
+        public long getMonitorWaitMillis() {
+            return millis(tableWaitNanos.sum());
+        }
+
+        @Override
+        public long getMonitorWaitMaxMicros() {
+            return micros(tableWaitMax.get());
+        }
+    }
+
+    private class Player implements PlayerMXBean {
+
+        private final int player;
+
+        Player(int player) {
+            this.player = player;
+        }
+
+        @Override
+        public long getClaimsSubmitted() {
+            return claimsSubmitted[player].sum();
+        }
+
+        @Override
+        public long getClaimsAccepted() {
+            return claimsAccepted[player].sum();
+        }
+
+        @Override
+        public long getClaimsRejected() {
+            return claimsRejected[player].sum();
+        }
+
+        @Override
+        public int getQueueDepth() {
+            IntSupplier queueDepth = queueDepths.get(player);
+            return queueDepth != null ? queueDepth.getAsInt() : 0;
+        }
+
+        @Override
+        public long getFreezeMillis() {
+            return freezeMillis[player].sum();
+        }
+
+        @Override
+        public long getFreezeLeftMillis() {
+            LongSupplier freezeLeft = freezesLeft.get(player);
+            return freezeLeft != null ? freezeLeft.getAsLong() : 0;
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Logger;
+
+/**
+ * Lets remote players (and spectators) play over TCP: a single thread multiplexes all the connections with an NIO
+ * selector, so hundreds of clients need no thread each. A client that connects takes the first free seat of a human
+ * player (ids 0 to config.humanPlayers-1), or watches the game if all the seats are taken, and its key presses are fed
+ * to Player::keyPressed. The server is a UserInterface: every update of the game is encoded once into a binary frame,
+ * and the frames are broadcast to all the clients in batches (a client joining in the middle of a game first gets the
+ * cards on the table and the scores). When the server has a SpectatorStream, the spectators get its snapshot and
+ * deltas instead of the updates (see SpectatorStream for their format). A client falling more than
+ * MAX_PENDING_BYTES behind is disconnected.
+ * <p>
+ * The frames are a type byte followed by fixed big-endian fields.
+ * From the client: KEY_PRESS slot:short.
+ * From the server:
+ * WELCOME player:short (-1 for a spectator) rows:short columns:short players:short featureSize:byte featureCount:byte,
+ * PLACE_CARD card:int slot:short, REMOVE_CARD slot:short, PLACE_TOKEN player:short slot:short, REMOVE_TOKENS,
+ * REMOVE_SLOT_TOKENS slot:short, REMOVE_TOKEN player:short slot:short, COUNTDOWN millies:long warn:byte,
+ * ELAPSED millies:long, FREEZE player:short millies:long, SCORE player:short score:int,
+ * WINNER count:short player:short (count times), RESET.
+ */
+public class GameServer implements UserInterface {
+
+    /**
+     * The type of the frames sent by the clients.
+     */
+    public static final byte KEY_PRESS = 1;
+
+    /**
+     * The types of the frames sent by the server.
+     */
+    public static final byte WELCOME = 1, PLACE_CARD = 2, REMOVE_CARD = 3, PLACE_TOKEN = 4, REMOVE_TOKENS = 5,
+            REMOVE_SLOT_TOKENS = 6, REMOVE_TOKEN = 7, COUNTDOWN = 8, ELAPSED = 9, FREEZE = 10, SCORE = 11, WINNER = 12,
+            RESET = 13;
+
+    /**
+     * The number of bytes of the frames sent by the clients.
+     */
+    private static final int CLIENT_FRAME_SIZE = 3;
+
+    /**
+     * The largest number of bytes of updates waiting to be sent to a client before it is disconnected.
+     */
+    static final int MAX_PENDING_BYTES = 1 << 20;
+
+    /**
+     * The number of connections the system queues until they are accepted (bursts of clients joining at once).
+     */
+    private static final int BACKLOG = 1024;
+
+    /**
+     * A connection (used by the server thread only).
+     */
+    private static class Client {
+
+        final SocketChannel channel;
+        final SelectionKey key;
+
+        /**
+         * The player the client plays, or -1 for a spectator.
+         */
+        final int player;
+
+        final ByteBuffer in = ByteBuffer.allocate(64 * CLIENT_FRAME_SIZE);
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+
+        /**
+         * The number of bytes in out.
+         */
+        int pending;
+
+        Client(SocketChannel channel, SelectionKey key, int player) {
+            this.channel = channel;
+            this.key = key;
+            this.player = player;
+        }
+    }
+
+    private final Logger logger;
+    private final Config config;
+
+    /**
+     * The players of the current game (filled in by the game session).
+     */
+    private final Player[] players;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * The frames published by the game and not yet broadcast.
+     */
+    private final ConcurrentLinkedQueue<byte[]> outbox = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The stream the spectators watch (null if they get the updates like the players), and its frames not yet
+     * broadcast.
+     */
+    private final SpectatorStream spectators;
+    private final ConcurrentLinkedQueue<byte[]> spectatorOutbox = new ConcurrentLinkedQueue<>();
+
+    /**
+     * True iff the server thread was woken up to broadcast the outbox and did not start yet.
+     */
+    private final AtomicBoolean wakingUp = new AtomicBoolean();
+
+    /**
+     * The number of connected clients (no frames are encoded while there are none).
+     */
+    private volatile int connected;
+
+    /**
+     * The clients and whether each human seat is taken (used by the server thread only).
+     */
+    private final List<Client> clients = new ArrayList<>();
+    private final boolean[] seats;
+
+    /**
+     * The batch of frames being broadcast (used by the server thread only).
+     */
+    private ByteBuffer batch = ByteBuffer.allocate(1 << 12);
+
+    /**
+     * The card in each slot plus 1 (0 if none) and the score of each player, sent to the clients that join.
+     */
+    private final AtomicIntegerArray cards, scores;
+
+    /**
+     * Starts listening for clients.
+     *
+     * @param players - the players of the current game (filled in by the game session).
+     * @param port    - the TCP port to listen on (0 for any free port, see GameServer::port).
+     * @throws IOException - if the port cannot be listened on.
+     */
+    public GameServer(Logger logger, Config config, Player[] players, int port) throws IOException {
+        this(logger, config, players, port, null);
+    }
+
+    /**
+     * @param spectators - the stream the spectators watch (null if they get the updates like the players).
+     */
+    public GameServer(Logger logger, Config config, Player[] players, int port, SpectatorStream spectators)
+            throws IOException {
+        this.logger = logger;
+        this.spectators = spectators;
+        this.config = config;
+        this.players = players;
+        this.seats = new boolean[config.humanPlayers];
+        this.cards = new AtomicIntegerArray(config.tableSize);
+        this.scores = new AtomicIntegerArray(config.players);
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(port), BACKLOG);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        thread = new Thread(this::run, "game-server");
+        thread.setDaemon(true);
+        thread.start();
+        if (spectators != null) spectators.subscribe(frame -> {
+            if (frame[0] == SpectatorStream.SNAPSHOT) return; // every spectator client gets its own snapshot
+            spectatorOutbox.add(frame);
+            wakeUp();
+        });
+        logger.info("game server listening on port " + port());
+    }
+
+    /**
+     * @return - the TCP port the server listens on.
+     */
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                wakingUp.set(false);
+                broadcastAll();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        while (accept()) ; // all the pending connections
+                        continue;
+                    }
+                    Client client = (Client) key.attachment();
+                    if (key.isReadable()) read(client);
+                    if (key.isValid() && key.isWritable()) write(client);
+                }
+            }
+            broadcastAll(); // the last updates (e.g. the winners), sent as far as the clients take them
+        } catch (IOException e) {
+            logger.severe("game server failed: " + e);
+        } finally {
+            for (Client client : new ArrayList<>(clients)) disconnect(client);
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Accepts a pending connection.
+     *
+     * @return - false iff there was no pending connection.
+     */
+    private boolean accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return false;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        int player = -1;
+        for (int seat = 0; seat < seats.length && player < 0; seat++)
+            if (!seats[seat]) player = seat;
+        if (player >= 0) seats[player] = true;
+
+        Client client = new Client(channel, channel.register(selector, SelectionKey.OP_READ), player);
+        client.key.attach(client);
+        clients.add(client);
+        connected = clients.size();
+        logger.info("client " + channel.getRemoteAddress() + " joined as "
+                + (player >= 0 ? "player " + (player + 1) : "a spectator"));
+
+        ByteBuffer welcome = ByteBuffer.allocate(11 + 7 * config.tableSize + 7 * config.players);
+        welcome.put(WELCOME).putShort((short) player).putShort((short) config.rows).putShort((short) config.columns)
+                .putShort((short) config.players).put((byte) config.featureSize).put((byte) config.featureCount);
+        if (player < 0 && spectators != null) {
+            welcome.flip();
+            send(client, welcome);
+            send(client, ByteBuffer.wrap(spectators.snapshot()));
+            return true;
+        }
+        for (int slot = 0; slot < config.tableSize; slot++) {
+            int card = cards.get(slot) - 1;
+            if (card >= 0) welcome.put(PLACE_CARD).putInt(card).putShort((short) slot);
+        }
+        for (int id = 0; id < config.players; id++) {
+            int score = scores.get(id);
+            if (score > 0) welcome.put(SCORE).putShort((short) id).putInt(score);
+        }
+        welcome.flip();
+        send(client, welcome);
+        return true;
+    }
+
+    private void read(Client client) {
+        try {
+            if (client.channel.read(client.in) < 0) {
+                disconnect(client);
+                return;
+            }
+        } catch (IOException e) {
+            disconnect(client);
+            return;
+        }
+        client.in.flip();
+        while (client.in.remaining() >= CLIENT_FRAME_SIZE) {
+            byte type = client.in.get();
+            int slot = client.in.getShort() & 0xffff;
+            if (type != KEY_PRESS) {
+                logger.warning("client of player " + (client.player + 1) + " sent an unknown frame " + type);
+                disconnect(client);
+                return;
+            }
+            if (client.player >= 0 && slot < config.tableSize) {
+                Player player = players[client.player];
+                if (player != null) player.keyPressed(slot, System.nanoTime());
+            }
+        }
+        client.in.compact();
+    }
+
+    private void broadcastAll() {
+        broadcast(outbox, false);
+        broadcast(spectatorOutbox, true);
+    }
+
+    /**
+     * Sends the frames published since the last broadcast, as a single batch, to the players and to the spectators
+     * watching the updates, or to the spectators watching the spectator stream.
+     */
+    private void broadcast(ConcurrentLinkedQueue<byte[]> frames, boolean stream) {
+        batch.clear();
+        byte[] frame;
+        while ((frame = frames.poll()) != null) {
+            if (batch.remaining() < frame.length) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * batch.capacity(), batch.position() + frame.length));
+                batch.flip();
+                batch = larger.put(batch);
+            }
+            batch.put(frame);
+        }
+        if (batch.position() == 0 || clients.isEmpty()) return;
+        byte[] bytes = Arrays.copyOf(batch.array(), batch.position());
+        for (Client client : new ArrayList<>(clients))
+            if (stream == (client.player < 0 && spectators != null)) send(client, ByteBuffer.wrap(bytes));
+    }
+
+    private void send(Client client, ByteBuffer bytes) {
+        if (client.pending + bytes.remaining() > MAX_PENDING_BYTES) {
+            logger.warning("client of player " + (client.player + 1) + " is too slow, disconnecting it");
+            disconnect(client);
+            return;
+        }
+        client.out.add(bytes);
+        client.pending += bytes.remaining();
+        write(client);
+    }
+
+    private void write(Client client) {
+        try {
+            while (!client.out.isEmpty()) {
+                ByteBuffer bytes = client.out.peek();
+                client.pending -= client.channel.write(bytes);
+                if (bytes.hasRemaining()) break; // the socket buffer is full, wait until it is writable
+                client.out.poll();
+            }
+            client.key.interestOps(client.out.isEmpty() ? SelectionKey.OP_READ
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            disconnect(client);
+        }
+    }
+
+    private void disconnect(Client client) {
+        if (!clients.remove(client)) return;
+        connected = clients.size();
+        if (client.player >= 0) seats[client.player] = false;
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException ignored) {}
+        logger.info("client of player " + (client.player + 1) + " left");
+    }
+
+    /**
+     * Queues a frame to be broadcast to the clients by the server thread.
+     */
+    private void publish(ByteBuffer frame) {
+        outbox.add(frame.array());
+        wakeUp();
+    }
+
+    private void wakeUp() {
+        if (wakingUp.compareAndSet(false, true)) selector.wakeup();
+    }
+
+    private void publish(byte type, int player, int slot) {
+        if (connected == 0) return;
+        ByteBuffer frame = ByteBuffer.allocate(5).put(type);
+        if (player >= 0) frame.putShort((short) player);
+        if (slot >= 0) frame.putShort((short) slot);
+        publish(ByteBuffer.wrap(Arrays.copyOf(frame.array(), frame.position())));
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        cards.set(slot, card + 1);
+        if (connected > 0) publish(ByteBuffer.allocate(7).put(PLACE_CARD).putInt(card).putShort((short) slot));
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        cards.set(slot, 0);
+        publish(REMOVE_CARD, -1, slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        publish(PLACE_TOKEN, player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        publish(REMOVE_TOKENS, -1, -1);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        publish(REMOVE_SLOT_TOKENS, -1, slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        publish(REMOVE_TOKEN, player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (connected > 0) publish(ByteBuffer.allocate(10).put(COUNTDOWN).putLong(millies).put((byte) (warn ? 1 : 0)));
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (connected > 0) publish(ByteBuffer.allocate(9).put(ELAPSED).putLong(millies));
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (connected > 0) publish(ByteBuffer.allocate(11).put(FREEZE).putShort((short) player).putLong(millies));
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        scores.set(player, score);
+        if (connected > 0) publish(ByteBuffer.allocate(7).put(SCORE).putShort((short) player).putInt(score));
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        if (connected == 0) return;
+        ByteBuffer frame = ByteBuffer.allocate(3 + 2 * players.length).put(WINNER).putShort((short) players.length);
+        for (int player : players) frame.putShort((short) player);
+        publish(frame);
+    }
+
+    @Override
+    public void reset() {
+        for (int slot = 0; slot < cards.length(); slot++) cards.set(slot, 0);
+        for (int player = 0; player < scores.length(); player++) scores.set(player, 0);
+        publish(RESET, -1, -1);
+    }
+
+    /**
+     * Sends the last updates, disconnects the clients and stops listening.
+     */
+    @Override
+    public void dispose() {
+        closed = true;
+        selector.wakeup();
+        if (Thread.currentThread() == thread) return;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
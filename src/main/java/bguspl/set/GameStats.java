@@ -0,0 +1,72 @@
+package bguspl.set;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput counters of the games sharing this object (a single game, or all the games of a host).
+ * The counters are striped, so updating them from many dealer and player threads does not contend.
+ */
+public class GameStats {
+
+    private final LongAdder games = new LongAdder();
+    private final LongAdder claims = new LongAdder();
+    private final LongAdder sets = new LongAdder();
+    private final LongAdder reshuffles = new LongAdder();
+
+    /**
+     * Called when a game was played to its end (not terminated).
+     */
+    public void gameFinished() {
+        games.increment();
+    }
+
+    /**
+     * Called when a player asks the dealer to check a set.
+     */
+    public void claimSubmitted() {
+        claims.increment();
+    }
+
+    /**
+     * Called when the dealer accepted a legal set.
+     */
+    public void setCollected() {
+        sets.increment();
+    }
+
+    /**
+     * Called when the dealer reshuffled the table due to turn timeout.
+     */
+    public void reshuffled() {
+        reshuffles.increment();
+    }
+
+    public long games() {
+        return games.sum();
+    }
+
+    public long claims() {
+        return claims.sum();
+    }
+
+    public long sets() {
+        return sets.sum();
+    }
+
+    public long reshuffles() {
+        return reshuffles.sum();
+    }
+
+    /**
+     * @param elapsedNanos - the time the counted games ran for.
+     * @return - a human readable summary of the counters and their rates.
+     */
+    public String report(long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+        return String.format("%d games, %d claims, %d sets, %d reshuffles in %.3f seconds: "
+                        + "%.2f games/sec, %.2f claims/sec, %.2f sets/sec",
+                games(), claims(), sets(), reshuffles(), seconds,
+                games() / seconds, claims() / seconds, sets() / seconds);
+    }
+}
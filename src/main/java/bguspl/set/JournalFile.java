@@ -0,0 +1,238 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+/**
+ * An append-only file of fixed-size binary records, written through memory mapped segments of the file.
+ * Appending is lock-free: a writer reserves the position of its record with a single atomic increment and writes the
+ * record directly into the mapped memory, so any number of dealer and player threads (of any number of games) can
+ * append at the same time. A segment is mapped by the first writer that needs it. Once the file reaches its maximal
+ * size the records are dropped (and counted), and so are the records appended after the file is closed (closing
+ * waits for the appends in flight, so the mapped memory is never written once the file is truncated).
+ * <p>
+ * File layout: a header of HEADER_SIZE bytes (magic, version, record size, the wall clock time the file was opened
+ * at, and the number of records, which is written when the file is closed), followed by the records. The first byte
+ * of a record is its type, 0 marks the end of the records.
+ */
+public class JournalFile implements AutoCloseable {
+
+    /**
+     * Identifies journal files ("SETJ").
+     */
+    public static final int MAGIC = 0x5345544A;
+
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 64;
+
+    public static final int RECORD_SIZE = 32;
+
+    /**
+     * The size of a mapped segment (a whole number of records).
+     */
+    private static final long SEGMENT_SIZE = (64L << 20) / RECORD_SIZE * RECORD_SIZE;
+
+    /**
+     * The offsets of the header fields.
+     */
+    static final int MAGIC_OFFSET = 0, VERSION_OFFSET = 4, RECORD_SIZE_OFFSET = 8, OPENED_OFFSET = 16,
+            COUNT_OFFSET = 24;
+
+    private final FileChannel channel;
+
+    /**
+     * The path of the file.
+     */
+    public final Path path;
+
+    /**
+     * The mapped segments of the file (null until the first record in the segment is written).
+     */
+    private final AtomicReferenceArray<MappedByteBuffer> segments;
+
+    /**
+     * The maximal number of records in the file.
+     */
+    private final long capacity;
+
+    /**
+     * The number of records reserved so far (including the dropped ones).
+     */
+    private final AtomicLong reserved = new AtomicLong();
+
+    /**
+     * The number of records written so far.
+     */
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * The number of appends currently writing to the mapped memory.
+     */
+    private final AtomicInteger appending = new AtomicInteger();
+
+    /**
+     * True once the file is closed (the appends are dropped from then on).
+     */
+    private volatile boolean closed;
+
+    /**
+     * The System::nanoTime the file was opened at (the records are timed relative to it).
+     */
+    private final long openedNanos = System.nanoTime();
+
+    /**
+     * The ids given to the games written to the file.
+     */
+    private final AtomicInteger games = new AtomicInteger();
+
+    private final MappedByteBuffer header;
+
+    /**
+     * Creates (or overwrites) a journal file.
+     *
+     * @param path     - the path of the file.
+     * @param maxBytes - the maximal size of the file (the records that do not fit are dropped).
+     * @throws IOException - if the file cannot be created.
+     */
+    public JournalFile(Path path, long maxBytes) throws IOException {
+        this.path = path;
+        if (path.getParent() != null) path.getParent().toFile().mkdirs();
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        capacity = Math.max(0, (maxBytes - HEADER_SIZE) / RECORD_SIZE);
+        segments = new AtomicReferenceArray<>((int) ((capacity * RECORD_SIZE + SEGMENT_SIZE - 1) / SEGMENT_SIZE));
+
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.putInt(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+        header.putLong(OPENED_OFFSET, System.currentTimeMillis());
+    }
+
+    /**
+     * Opens the journal file of the configuration.
+     *
+     * @return - the journal file, or null if config.journalFile is empty or the file cannot be created.
+     */
+    public static JournalFile open(Config config, Logger logger) {
+        if (config.journalFile.isEmpty()) return null;
+        try {
+            return new JournalFile(Paths.get(config.journalFile), config.journalMegabytes << 20);
+        } catch (IOException e) {
+            logger.severe("cannot create the event journal " + config.journalFile + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * @return - a new game id.
+     */
+    int newGame() {
+        return games.incrementAndGet();
+    }
+
+    /**
+     * @return - the time passed since the file was opened in nanoseconds.
+     */
+    long elapsedNanos() {
+        return System.nanoTime() - openedNanos;
+    }
+
+    /**
+     * Appends a record (lock-free).
+     *
+     * @return - true iff the record was written, false if it was dropped because the file is full or closed.
+     */
+    boolean append(byte type, long nanos, long clockMillis, int game, int player, int slot, int value) {
+        appending.incrementAndGet(); // before checking closed, so close either sees this append or it sees closed
+        try {
+            if (closed) return false;
+            long index = reserved.getAndIncrement();
+            if (index >= capacity) return false;
+            write(index, type, nanos, clockMillis, game, player, slot, value);
+            written.incrementAndGet();
+            return true;
+        } finally {
+            appending.decrementAndGet();
+        }
+    }
+
+    private void write(long index, byte type, long nanos, long clockMillis, int game, int player, int slot,
+                       int value) {
+        long offset = index * RECORD_SIZE;
+        MappedByteBuffer segment = segment((int) (offset / SEGMENT_SIZE));
+        int position = (int) (offset % SEGMENT_SIZE);
+        segment.putLong(position + 8, nanos);
+        segment.putLong(position + 16, clockMillis);
+        segment.putInt(position + 24, game);
+        segment.putShort(position + 2, (short) player);
+        segment.putShort(position + 4, (short) slot);
+        segment.putInt(position + 28, value);
+        segment.put(position, type); // the type is written last, as it marks the record as written
+    }
+
+    private MappedByteBuffer segment(int index) {
+        MappedByteBuffer segment = segments.get(index);
+        if (segment != null) return segment;
+        try {
+            long start = HEADER_SIZE + index * SEGMENT_SIZE;
+            long size = Math.min(SEGMENT_SIZE, capacity * RECORD_SIZE - index * SEGMENT_SIZE);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot map the event journal " + path, e);
+        }
+        return segments.compareAndSet(index, null, segment) ? segment : segments.get(index);
+    }
+
+    /**
+     * @return - the number of records written so far.
+     */
+    public long records() {
+        return written.get();
+    }
+
+    /**
+     * @return - the number of records dropped because the file was full.
+     */
+    public long dropped() {
+        return Math.max(0, reserved.get() - capacity);
+    }
+
+    /**
+     * Waits for the appends in flight, writes the number of records to the header, flushes the file and truncates it
+     * to its records (the records appended from now on are dropped).
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        while (appending.get() > 0) Thread.yield(); // an append only writes a single record
+        header.putLong(COUNT_OFFSET, records());
+        header.force();
+        for (int i = 0; i < segments.length(); i++)
+            if (segments.get(i) != null) segments.get(i).force();
+        channel.truncate(HEADER_SIZE + records() * RECORD_SIZE);
+        channel.close();
+    }
+
+    /**
+     * Closes the file, and logs the number of records written and dropped (or the failure to close the file).
+     */
+    public void close(Logger logger) {
+        try {
+            close();
+            logger.severe("event journal " + path + ": " + records() + " records, " + dropped() + " dropped");
+        } catch (IOException e) {
+            logger.severe("cannot close the event journal " + path + ": " + e);
+        }
+    }
+}
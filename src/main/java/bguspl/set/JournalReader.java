@@ -0,0 +1,104 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads an event journal (see JournalFile and EventJournal): prints a summary of the journaled games (the number of
+ * events of each type, the legal and illegal claims, the reshuffles and the freeze time of every game, and the event
+ * rate), and optionally every record as a line of text.
+ */
+public class JournalReader {
+
+    /**
+     * The totals of a single journaled game.
+     */
+    private static class GameSummary {
+        final Map<EventJournal.Type, Long> events = new EnumMap<>(EventJournal.Type.class);
+        long legalClaims, illegalClaims, freezeMillis, firstClock = Long.MAX_VALUE, lastClock = Long.MIN_VALUE;
+    }
+
+    /**
+     * The reader's main function.
+     *
+     * @param args - the journal file, and optionally --dump to print every record.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("usage: JournalReader <journal file> [--dump]");
+            return;
+        }
+        try {
+            read(Paths.get(args[0]), args.length > 1 && args[1].equals("--dump"));
+        } catch (IOException e) {
+            System.out.println("cannot read the journal " + args[0] + ": " + e.getMessage());
+        }
+    }
+
+    private static void read(Path path, boolean dump) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < JournalFile.HEADER_SIZE) throw new IOException(path + " is not an event journal");
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, JournalFile.HEADER_SIZE);
+            if (header.getInt(JournalFile.MAGIC_OFFSET) != JournalFile.MAGIC)
+                throw new IOException(path + " is not an event journal");
+            int version = header.getInt(JournalFile.VERSION_OFFSET);
+            if (version != JournalFile.VERSION) throw new IOException("unsupported journal version " + version);
+            int recordSize = header.getInt(JournalFile.RECORD_SIZE_OFFSET);
+
+            // the count is written when the journal is closed, a journal that was not closed is read up to its end
+            long count = header.getLong(JournalFile.COUNT_OFFSET);
+            if (count == 0) count = (channel.size() - JournalFile.HEADER_SIZE) / recordSize;
+
+            Map<Integer, GameSummary> games = new TreeMap<>();
+            Map<EventJournal.Type, Long> totals = new EnumMap<>(EventJournal.Type.class);
+            long records = 0, lastNanos = 0;
+            long position = JournalFile.HEADER_SIZE, end = JournalFile.HEADER_SIZE + count * recordSize;
+            while (position < end) {
+                long size = Math.min(end - position, (Integer.MAX_VALUE / recordSize) * (long) recordSize);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                for (int offset = 0; offset < size; offset += recordSize) {
+                    EventJournal.Type type = EventJournal.Type.of(buffer.get(offset));
+                    if (type == null) { // never written (the journal was not closed)
+                        position = end;
+                        break;
+                    }
+                    int player = buffer.getShort(offset + 2), slot = buffer.getShort(offset + 4);
+                    long nanos = buffer.getLong(offset + 8), clock = buffer.getLong(offset + 16);
+                    int game = buffer.getInt(offset + 24), value = buffer.getInt(offset + 28);
+                    if (dump)
+                        System.out.printf("%.6f game %d %s player %d slot %d value %d clock %d%n", nanos / 1e9, game,
+                                type, player, slot, value, clock);
+
+                    GameSummary summary = games.computeIfAbsent(game, id -> new GameSummary());
+                    summary.events.merge(type, 1L, Long::sum);
+                    totals.merge(type, 1L, Long::sum);
+                    if (type == EventJournal.Type.CLAIM) {
+                        if (value == 1) summary.legalClaims++;
+                        else summary.illegalClaims++;
+                    } else if (type == EventJournal.Type.FREEZE) summary.freezeMillis += value;
+                    summary.firstClock = Math.min(summary.firstClock, clock);
+                    summary.lastClock = Math.max(summary.lastClock, clock);
+                    lastNanos = Math.max(lastNanos, nanos);
+                    records++;
+                }
+                position += size;
+            }
+
+            System.out.printf("%s: %d records of %d games in %.3f s (%.0f events/s)%n", path, records, games.size(),
+                    lastNanos / 1e9, lastNanos > 0 ? records * 1e9 / lastNanos : 0.0);
+            System.out.println("events: " + totals);
+            games.forEach((id, game) -> System.out.printf(
+                    "game %d: %d cards placed, %d legal claims, %d illegal claims, %d reshuffles, %d ms frozen, "
+                            + "%d game ms%n", id, game.events.getOrDefault(EventJournal.Type.PLACE_CARD, 0L),
+                    game.legalClaims, game.illegalClaims, game.events.getOrDefault(EventJournal.Type.RESHUFFLE, 0L),
+                    game.freezeMillis, game.lastClock - game.firstClock));
+        }
+    }
+}
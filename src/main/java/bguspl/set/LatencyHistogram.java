@@ -0,0 +1,113 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of latencies (in nanoseconds) with log-linear buckets.
+ * Every power of two is split into SUB_BUCKETS linear buckets, so percentiles are accurate to about 1/SUB_BUCKETS.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of linear buckets each power of two is split into (must be a power of two).
+     */
+    private static final int SUB_BUCKETS = 16;
+    private static final int SUB_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    /**
+     * The number of samples recorded into each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray((Long.SIZE - SUB_BITS) * SUB_BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the highest value that falls into the given bucket.
+     */
+    private static long bucketLimit(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a single sample.
+     *
+     * @param nanos - the measured latency (negative values are counted as 0).
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos))
+            current = max.get();
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long samples = count.get();
+        return samples == 0 ? 0 : (double) sum.get() / samples;
+    }
+
+    /**
+     * @param percentile - a value between 0 and 100.
+     * @return - an upper bound of the latency below which the given percentage of the samples fall (0 if empty).
+     */
+    public long percentile(double percentile) {
+        long samples = count.get();
+        if (samples == 0) return 0;
+        long rank = (long) Math.ceil(samples * percentile / 100.0);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) return Math.min(bucketLimit(bucket), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Adds the samples of another histogram to this one (e.g. to aggregate the histograms of many games).
+     */
+    public void add(LatencyHistogram other) {
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            long samples = other.counts.get(bucket);
+            if (samples != 0) counts.addAndGet(bucket, samples);
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get(), current = max.get();
+        while (otherMax > current && !max.compareAndSet(current, otherMax))
+            current = max.get();
+    }
+
+    /**
+     * Clears all the recorded samples.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < counts.length(); bucket++)
+            counts.set(bucket, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+}
@@ -0,0 +1,89 @@
+package bguspl.set;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traces how long a key press takes to travel through the game: from the moment it is stamped (by the InputManager
+ * or by the computer player key generator) until it becomes a visible token or a claim verdict.
+ * Stamps are taken from the monotonic System::nanoTime and a stamp of 0 means "not traced".
+ */
+public class LatencyTracker {
+
+    /**
+     * The measured stages of a key press.
+     */
+    public enum Stage {
+        INPUT_QUEUE("key press -> taken by player thread"),
+        TOKEN_VISIBLE("key press -> token shown"),
+        UI_PLACE_TOKEN("ui placeToken call"),
+        CLAIM_VALIDATION("dealer monitor wait + claim validation"),
+        CLAIM_VERDICT("key press -> claim verdict");
+
+        public final String description;
+
+        Stage(String description) {
+            this.description = description;
+        }
+    }
+
+    /**
+     * True iff latencies should be traced.
+     */
+    private final boolean enabled;
+
+    /**
+     * A histogram per stage (indexed by the stage ordinal).
+     */
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    public LatencyTracker(boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < histograms.length; i++)
+            histograms[i] = new LatencyHistogram();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return - a monotonic timestamp to trace from, or 0 if tracing is disabled.
+     */
+    public long stamp() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the time passed since the given stamp in the histogram of the given stage.
+     *
+     * @param stage - the stage that was reached.
+     * @param stamp - the stamp taken at the beginning of the stage (ignored if 0).
+     */
+    public void record(Stage stage, long stamp) {
+        if (enabled && stamp != 0L)
+            histograms[stage.ordinal()].record(System.nanoTime() - stamp);
+    }
+
+    public LatencyHistogram histogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * @return - a human readable table of the percentiles of every stage.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder("latency report (microseconds):");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histogram(stage);
+            sb.append(String.format("%n  %-40s count=%-8d mean=%-10.1f p50=%-8d p90=%-8d p99=%-8d p99.9=%-8d max=%d",
+                    stage.description, histogram.count(), histogram.mean() / 1000.0,
+                    micros(histogram.percentile(50)), micros(histogram.percentile(90)),
+                    micros(histogram.percentile(99)), micros(histogram.percentile(99.9)), micros(histogram.max())));
+        }
+        return sb.toString();
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
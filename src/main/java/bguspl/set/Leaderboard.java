@@ -0,0 +1,222 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The scores of the players of a game, kept in standings order as the points are awarded, so the leaders, the top
+ * players and the rank of a player are available at any time without scanning or sorting the players.
+ * The players are kept in an array ordered by descending score, where the players of the same score are contiguous
+ * (a bucket): a point moves the player to the front of its bucket, which makes it the last player of the next bucket,
+ * so awarding a point, the rank of a player and the leaders take O(1), and the top k players O(k).
+ * Players with the same score share their rank (the number of players with a higher score plus 1).
+ * The score updates of the user interface are coalesced: the thread awarding a point publishes the scores changed
+ * since the last publication, unless another thread is already publishing them (it then publishes this one too), so
+ * the user interface gets the latest score of every player without a call per point when many players score at once.
+ */
+public class Leaderboard {
+
+    private final UserInterface ui;
+
+    /**
+     * The players, in descending score order (guarded by this).
+     */
+    private final int[] order;
+
+    /**
+     * The index of each player in the order (guarded by this).
+     */
+    private final int[] position;
+
+    /**
+     * The score of each player (guarded by this).
+     */
+    private final int[] scores;
+
+    /**
+     * The index in the order of the first player of each score, and the number of players of each score, grown as
+     * the scores grow (guarded by this).
+     */
+    private int[] first, counts;
+
+    /**
+     * The players whose scores changed since they were last published to the user interface, and whether each player
+     * is in the list (guarded by this).
+     */
+    private final int[] changed;
+    private final boolean[] isChanged;
+    private int changes;
+
+    /**
+     * True while a thread publishes the changed scores to the user interface.
+     */
+    private final AtomicBoolean publishing = new AtomicBoolean();
+
+    /**
+     * The players and scores being published (used only by the publishing thread).
+     */
+    private final int[] publishedPlayers, publishedScores;
+
+    /**
+     * @param players - the number of players.
+     * @param ui      - the user interface the scores are published to.
+     */
+    public Leaderboard(int players, UserInterface ui) {
+        this.ui = ui;
+        order = new int[players];
+        position = new int[players];
+        scores = new int[players];
+        changed = new int[players];
+        isChanged = new boolean[players];
+        publishedPlayers = new int[players];
+        publishedScores = new int[players];
+        first = new int[16];
+        counts = new int[16];
+        reset();
+    }
+
+    /**
+     * Sets the scores of all the players to 0 (a new game starts), without publishing them.
+     */
+    public synchronized void reset() {
+        for (int player = 0; player < order.length; player++) {
+            order[player] = player;
+            position[player] = player;
+            scores[player] = 0;
+            isChanged[player] = false;
+        }
+        Arrays.fill(first, 0);
+        Arrays.fill(counts, 0);
+        counts[0] = order.length;
+        changes = 0;
+    }
+
+    /**
+     * Sets the scores of all the players (a game is resumed) and publishes them.
+     */
+    public void restore(int[] scores) {
+        synchronized (this) {
+            int max = 0;
+            for (int score : scores) max = Math.max(max, score);
+            if (max >= counts.length) {
+                first = new int[Integer.highestOneBit(max) * 2];
+                counts = new int[first.length];
+            }
+            Arrays.fill(first, 0);
+            Arrays.fill(counts, 0);
+            for (int player = 0; player < order.length; player++) {
+                this.scores[player] = scores[player];
+                counts[scores[player]]++;
+                if (!isChanged[player]) {
+                    isChanged[player] = true;
+                    changed[changes++] = player;
+                }
+            }
+            // counting sort by descending score
+            for (int score = max, index = 0; score >= 0; score--) {
+                first[score] = index;
+                index += counts[score];
+            }
+            int[] next = Arrays.copyOf(first, first.length);
+            for (int player = 0; player < order.length; player++) {
+                int index = next[scores[player]]++;
+                order[index] = player;
+                position[player] = index;
+            }
+        }
+        publish();
+    }
+
+    /**
+     * Awards a point to a player and publishes the new score to the user interface.
+     *
+     * @return - the new score of the player.
+     */
+    public int point(int player) {
+        int score;
+        synchronized (this) {
+            score = scores[player] + 1;
+            if (score == counts.length) {
+                first = Arrays.copyOf(first, 2 * counts.length);
+                counts = Arrays.copyOf(counts, 2 * counts.length);
+            }
+            // swap the player with the first player of its bucket, which then becomes the last of the next bucket
+            int from = position[player], to = first[score - 1];
+            int other = order[to];
+            order[from] = other;
+            position[other] = from;
+            order[to] = player;
+            position[player] = to;
+            if (counts[score] == 0) first[score] = to;
+            first[score - 1] = to + 1;
+            counts[score - 1]--;
+            counts[score]++;
+            scores[player] = score;
+            if (!isChanged[player]) {
+                isChanged[player] = true;
+                changed[changes++] = player;
+            }
+        }
+        publish();
+        return score;
+    }
+
+    /**
+     * Publishes the changed scores to the user interface, unless another thread is publishing them.
+     */
+    private void publish() {
+        while (publishing.compareAndSet(false, true)) {
+            int count;
+            try {
+                synchronized (this) {
+                    count = changes;
+                    for (int i = 0; i < count; i++) {
+                        publishedPlayers[i] = changed[i];
+                        publishedScores[i] = scores[changed[i]];
+                        isChanged[changed[i]] = false;
+                    }
+                    changes = 0;
+                }
+                for (int i = 0; i < count; i++) ui.setScore(publishedPlayers[i], publishedScores[i]);
+            } finally {
+                publishing.set(false);
+            }
+            synchronized (this) { // a point awarded while publishing may have seen the flag set
+                if (changes == 0) return;
+            }
+        }
+    }
+
+    /**
+     * @return - the score of the player.
+     */
+    public synchronized int score(int player) {
+        return scores[player];
+    }
+
+    /**
+     * @return - the rank of the player: 1 plus the number of players with a higher score.
+     */
+    public synchronized int rank(int player) {
+        return first[scores[player]] + 1;
+    }
+
+    /**
+     * @return - the players with the highest score, in ascending id order.
+     */
+    public synchronized int[] leaders() {
+        if (order.length == 0) return new int[0];
+        int[] leaders = Arrays.copyOf(order, counts[scores[order[0]]]);
+        Arrays.sort(leaders);
+        return leaders;
+    }
+
+    /**
+     * @param k - the number of players.
+     * @return - the (at most) k players with the highest scores, in descending score order (players of the same score
+     * are in no particular order).
+     */
+    public synchronized int[] top(int k) {
+        return Arrays.copyOf(order, Math.min(k, order.length));
+    }
+}
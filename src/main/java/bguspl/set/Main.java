@@ -1,15 +1,18 @@
 package bguspl.set;
 
-import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameCheckpoint;
+import bguspl.set.ex.GameSession;
 import bguspl.set.ex.Player;
-import bguspl.set.ex.Table;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.logging.*;
 
 /**
@@ -17,23 +20,33 @@ import java.util.logging.*;
  */
 public class Main {
 
-    private static Dealer dealer;
+    private static GameSession session;
     private static Thread mainThread;
 
     private static boolean xButtonPressed = false;
     private static Logger logger;
 
+    /**
+     * The number of log records the log buffer holds (see AsyncLogHandler).
+     */
+    private static final int LOG_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The number of UI updates the event bus holds (see EventBus).
+     */
+    private static final int UI_EVENT_BUFFER_SIZE = 1 << 14;
+
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
-        if (dealer != null) dealer.terminate();
+        if (session != null) session.terminate();
         mainThread.join();
     }
 
     /**
      * The game's main function. Creates all data structures and initializes the threads.
      *
-     * @param args - unused.
+     * @param args - "--restore" to resume the game checkpointed to config.checkpointFile.
      */
     public static void main(String[] args) {
 
@@ -47,35 +60,67 @@ public class Main {
         Util util = new UtilImpl(config);
 
         Player[] players = new Player[config.players];
+        SpectatorStream spectators = null;
+        if (config.serverPort > 0 || !config.spectatorPipe.isEmpty()) spectators = new SpectatorStream(logger, config);
+        if (!config.spectatorPipe.isEmpty()) spectators.subscribe(config.spectatorPipe);
+        GameServer server = null;
+        if (config.serverPort > 0) try {
+            server = new GameServer(logger, config, players, config.serverPort, spectators);
+        } catch (IOException e) {
+            logger.severe("error starting the game server: " + e.getMessage());
+        }
         UserInterface ui = null;
         try {
             ui = new UserInterfaceSwing(logger, config, players);
         } catch (UnsupportedOperationException | IllegalArgumentException e) {
             logger.severe("error creating swing user interface: " + e.getMessage());
             logger.severe("will try to run without user interface");
-            if (config.humanPlayers > 0)
+            if (config.humanPlayers > 0 && server == null)
                 logger.severe("warning: running with human players with no user interface");
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
-
-        Env env = new Env(logger, config, ui, util);
+        // the engine publishes the UI updates to the event bus, which replays them on the window, the remote clients,
+        // the spectator stream and the log from their own threads
+        List<String> names = new ArrayList<>();
+        List<UserInterface> consumers = new ArrayList<>();
+        if (ui != null) {
+            names.add("window");
+            consumers.add(ui);
+        }
+        if (server != null) {
+            names.add("server");
+            consumers.add(server);
+        }
+        if (spectators != null) {
+            names.add("spectators");
+            consumers.add(spectators);
+        }
+        if (consumers.isEmpty()) ui = new UserInterfaceDecorator(logger, util, null);
+        else {
+            names.add("log");
+            consumers.add(UserInterfaceDecorator.logOnly(logger, util));
+            ui = new EventBus(logger, config, UI_EVENT_BUFFER_SIZE, names.toArray(new String[0]),
+                    consumers.toArray(new UserInterface[0]));
+        }
 
-        // create the game entities
-        Table table = new Table(env);
-        dealer = new Dealer(env, table, players);
-        for (int i = 0; i < players.length; i++)
-            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+        JournalFile journalFile = JournalFile.open(config, logger);
+        Env env = new Env(logger, config, ui, util, Env.newWorkerPool(), new GameStats(),
+                Env.newClock(config), journalFile);
+        env.metrics.register();
 
-        // start the dealer thread
-        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
-        dealerThread.startWithLog();
+        // the session creates the game entities and runs the games (the dealer, players and computer players run on
+        // the pooled threads of env.executor, which are reused by the following games)
+        boolean restore = args.length > 0 && args[0].equals("--restore");
+        session = restore ? restoreSession(env, players) : new GameSession(env, players);
 
         try {
+            session.run();
             // shutdown stuff
-            dealerThread.joinWithLog();
             if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
+            env.executor.shutdown();
+            env.metrics.unregister();
+            if (journalFile != null) journalFile.close(logger);
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             if (!xButtonPressed) env.ui.dispose();
@@ -87,7 +132,25 @@ public class Main {
         }
     }
 
-    private static Logger initLogger() {
+    /**
+     * @return - a session resuming the game checkpointed to config.checkpointFile, or a new session if there is none.
+     */
+    private static GameSession restoreSession(Env env, Player[] players) {
+        if (env.config.checkpointFile.isEmpty()) {
+            logger.severe("cannot restore a game: no checkpoint file is configured");
+            return new GameSession(env, players);
+        }
+        try {
+            GameCheckpoint checkpoint = GameCheckpoint.read(Paths.get(env.config.checkpointFile));
+            if (checkpoint.fits(env.config)) return new GameSession(env, players, checkpoint);
+            logger.severe("cannot restore a game: the checkpoint does not fit the configuration");
+        } catch (IOException e) {
+            logger.severe("cannot restore a game: " + e);
+        }
+        return new GameSession(env, players);
+    }
+
+    static Logger initLogger() {
 
         //just to make our log file nicer :)
         SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
@@ -102,7 +165,7 @@ public class Main {
 
         java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
         logger.setUseParentHandlers(false);
-        logger.addHandler(handler);
+        logger.addHandler(new AsyncLogHandler(handler, LOG_BUFFER_SIZE)); // the file is written by a background thread
         setLoggerLevelAndFormat(logger, Level.ALL, "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
 
         return logger;
@@ -112,8 +175,9 @@ public class Main {
         Handler[] handlers = logger.getHandlers();
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
             // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
+            // not synchronized: the records are formatted by the log writer thread only (see AsyncLogHandler)
             @Override
-            public synchronized String format(LogRecord lr) {
+            public String format(LogRecord lr) {
                 return String.format(format, new Date(lr.getMillis()),
                         lr.getLevel().getLocalizedName(), lr.getMessage()
                 );
@@ -0,0 +1,32 @@
+package bguspl.set;
+
+/**
+ * A clock running in real time (the system clock, Thread::sleep and Object::wait).
+ */
+public class RealClock implements Clock {
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis > 0) Thread.sleep(millis);
+    }
+
+    @Override
+    public void await(Object monitor, long millis) throws InterruptedException {
+        monitor.wait(millis);
+    }
+
+    @Override
+    public void signalAll(Object monitor) {
+        monitor.notifyAll();
+    }
+
+    @Override
+    public Runnable participant(Runnable task) {
+        return task;
+    }
+}
@@ -0,0 +1,95 @@
+package bguspl.set;
+
+import bguspl.set.ex.GameRecording;
+import bguspl.set.ex.SteppedGame;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Replays a recorded game (see RecordDirectory) against the stepped engine, headless and in virtual time: the dealer
+ * is seeded with the recorded seed and the players press the recorded keys at the recorded times. The deals and the
+ * claim verdicts of the replay are compared to the recorded ones, so a game can be reproduced (e.g. under a profiler)
+ * and any divergence from the recording is reported.
+ * Note: games of the threaded engine replay exactly as long as the order of their events did not depend on the
+ * scheduling of the threads (e.g. two claims before the dealer refilled the table).
+ */
+public class Replay {
+
+    /**
+     * The replay's main function.
+     *
+     * @param args - the recording file to replay (and optionally the configuration file, config.properties by default).
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("usage: Replay <recording file> [config file]");
+            return;
+        }
+        Logger logger = Logger.getLogger("SetGameReplay");
+        logger.setUseParentHandlers(false);
+        Properties properties = Config.loadProperties(args.length > 1 ? args[1] : "config.properties", logger);
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("Hints", "False");
+        Config config = new Config(logger, properties);
+
+        GameRecording recorded;
+        try {
+            recorded = GameRecording.read(Paths.get(args[0]));
+        } catch (IOException e) {
+            System.out.println("cannot read the recording " + args[0] + ": " + e.getMessage());
+            return;
+        }
+        if (!recorded.matches(config)) // the game may have been recorded by a simulation
+            config = Simulation.simulationConfig(logger, properties);
+        if (!recorded.matches(config))
+            System.out.println("warning: the game was recorded with a different configuration, it will diverge.");
+
+        Util util = new UtilImpl(config);
+        Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util, null, new GameStats(),
+                new StepClock());
+        GameRecording replayed = new GameRecording(env, recorded.seed);
+        SteppedGame game = new SteppedGame(env, recorded, replayed);
+
+        long start = System.nanoTime();
+        game.run();
+        long elapsedNanos = System.nanoTime() - start;
+
+        System.out.printf("replayed game %d: %d events, %d steps, %d virtual ms in %.3f ms, scores %s%n",
+                recorded.seed, recorded.events().size(), game.steps(), env.clock.currentTimeMillis(),
+                elapsedNanos / 1e6, Arrays.toString(game.scores()));
+        boolean identical = compare("deals", recorded.events(GameRecording.Type.DEAL),
+                replayed.events(GameRecording.Type.DEAL));
+        for (int player = 0; player < config.players; player++) // the players claim concurrently in the threaded engine
+            identical &= compare("claims of player " + player, claims(recorded, player), claims(replayed, player));
+        if (identical) System.out.println("the deals and the claims are identical to the recording.");
+    }
+
+    private static List<GameRecording.Event> claims(GameRecording recording, int player) {
+        return recording.events(GameRecording.Type.CLAIM).stream().filter(event -> event.first == player)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Compares recorded events to replayed ones, and prints the first difference.
+     *
+     * @return - true iff the events are the same.
+     */
+    private static boolean compare(String name, List<GameRecording.Event> expected, List<GameRecording.Event> actual) {
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            GameRecording.Event a = expected.get(i), b = actual.get(i);
+            if (a.first != b.first || a.second != b.second) {
+                System.out.println(name + " diverged at " + i + ": recorded " + a + ", replayed " + b);
+                return false;
+            }
+        }
+        if (expected.size() == actual.size()) return true;
+        System.out.println(name + " diverged: recorded " + expected.size() + ", replayed " + actual.size());
+        return false;
+    }
+}
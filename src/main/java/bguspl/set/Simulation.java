@@ -0,0 +1,67 @@
+package bguspl.set;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Runs complete games of computer players headless and as fast as the engine allows, in order to measure the real
+ * throughput of the engine. The configuration file is used with all artificial delays removed: no user interface,
+ * no table delays, no freezes, no end game pause, no hints and no logging, and the games run in virtual time (see
+ * VirtualClock, or the stepped engine if configured), so the turn timeouts take no real time either. The games are
+ * run by a GameHost (see HostGames and HostConcurrency) and the throughput is reported in games/sec, claims/sec and
+ * sets/sec.
+ */
+public class Simulation {
+
+    /**
+     * The configuration values that are forced in simulation mode.
+     */
+    private static final String[][] overrides = {
+            {"LogLevel", "OFF"},
+            {"VirtualClock", "True"},
+            {"RandomSpinMin", "0"},
+            {"RandomSpinMax", "0"},
+            {"Hints", "False"},
+            {"PointFreezeSeconds", "0"},
+            {"PenaltyFreezeSeconds", "0"},
+            {"TableDelaySeconds", "0"},
+            {"EndGamePauseSeconds", "0"}};
+
+    /**
+     * Creates the simulation configuration: the given properties with all delays removed and all players played by
+     * the computer.
+     *
+     * @param logger     - the logger.
+     * @param properties - the configuration properties to start from.
+     * @return - the simulation configuration.
+     */
+    public static Config simulationConfig(Logger logger, Properties properties) {
+        Properties simulation = new Properties();
+        simulation.putAll(properties);
+        for (String[] override : overrides)
+            simulation.setProperty(override[0], override[1]);
+
+        int humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
+        int computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
+        simulation.setProperty("HumanPlayers", "0");
+        simulation.setProperty("ComputerPlayers", Integer.toString(humanPlayers + computerPlayers));
+        return new Config(logger, simulation);
+    }
+
+    /**
+     * The simulation's main function.
+     *
+     * @param args - unused.
+     */
+    public static void main(String[] args) {
+        Logger logger = Logger.getLogger("SetGameSimulation");
+        logger.setUseParentHandlers(false);
+        Config config = simulationConfig(logger, Config.loadProperties("config.properties", logger));
+
+        GameHost host = new GameHost(logger, config);
+        Runtime.getRuntime().addShutdownHook(new Thread(host::terminate));
+        host.run();
+        System.out.println("Simulated " + config.hostGames + " games with " + config.players + " players: "
+                + host.report());
+    }
+}
@@ -0,0 +1,297 @@
+package bguspl.set;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Streams the game to spectators as a snapshot of the table followed by deltas: the UserInterface methods only update
+ * a model of the table (the cards, the tokens, the scores, the countdown and the winners) and mark what changed, and
+ * the stream thread encodes the changes of every frame (config.frameRate frames per second) into a single delta, sent
+ * as is to all the sinks (the spectators of a GameServer, a pipe etc.), so the engine pays for no encoding at all and
+ * the stream pays for one encoding per frame however many spectators watch. A sink that subscribes gets a snapshot of
+ * the whole table first.
+ * <p>
+ * The frames are a type byte (SNAPSHOT or DELTA), a sequence number:int and a body of big-endian fields:
+ * slots:short, then for every changed slot: slot:short card:int (-1 for none) tokens:byte[(players+7)/8] (bit p of
+ * the tokens is set iff player p has a token on the slot);
+ * scores:short, then for every changed score: player:short score:int;
+ * flags:byte, followed by countdown millies:long warn:byte if bit 0 is set, and by count:short player:short (count
+ * times) if bit 1 is set (the winners, none after a reset).
+ * The sequence number of a snapshot is that of the last delta it includes (a client skips the deltas up to it).
+ */
+public class SpectatorStream implements UserInterface {
+
+    public static final byte SNAPSHOT = 15, DELTA = 14;
+
+    private static final int COUNTDOWN_CHANGED = 1, WINNERS_CHANGED = 2;
+
+    /**
+     * A receiver of the stream.
+     */
+    public interface Sink {
+
+        /**
+         * Sends a frame (called by the stream thread; a sink that fails is unsubscribed).
+         */
+        void send(byte[] frame) throws IOException;
+    }
+
+    private final Logger logger;
+    private final Config config;
+
+    /**
+     * The model of the table, and which parts of it changed since the last delta (guarded by this).
+     */
+    private final int[] cards;
+    private final byte[][] tokens;
+    private final int[] scores;
+    private long countdown;
+    private boolean warn;
+    private int[] winners = new int[0];
+    private final boolean[] slotChanged, scoreChanged;
+    private int flags;
+    private boolean changed;
+
+    /**
+     * The number of deltas encoded so far (guarded by this).
+     */
+    private int sequence;
+
+    /**
+     * The sinks receiving the deltas (used by the stream thread only), and the sinks waiting for their snapshot.
+     */
+    private final List<Sink> sinks = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Sink> joining = new ConcurrentLinkedQueue<>();
+
+    private final Thread thread;
+    private volatile boolean disposed;
+
+    public SpectatorStream(Logger logger, Config config) {
+        this.logger = logger;
+        this.config = config;
+        cards = new int[config.tableSize];
+        Arrays.fill(cards, -1);
+        tokens = new byte[config.tableSize][(config.players + 7) / 8];
+        scores = new int[config.players];
+        slotChanged = new boolean[config.tableSize];
+        scoreChanged = new boolean[config.players];
+        thread = new Thread(this::run, "spectator-stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Subscribes a sink: it gets a snapshot of the table on the next frame, and the deltas from then on.
+     */
+    public void subscribe(Sink sink) {
+        joining.add(sink);
+    }
+
+    /**
+     * @return - a snapshot of the whole table, as of the last delta (for a client joining a sink already subscribed).
+     */
+    public synchronized byte[] snapshot() {
+        return encode(SNAPSHOT, sequence, true);
+    }
+
+    /**
+     * Subscribes a pipe (or a file): the pipe is opened in the background, since opening a named pipe waits for its
+     * reader, and the stream is written to it until it is closed.
+     *
+     * @param path - the path of the pipe.
+     */
+    public void subscribe(String path) {
+        Thread opener = new Thread(() -> {
+            try {
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(path));
+                subscribe(frame -> {
+                    out.write(frame);
+                    out.flush();
+                });
+                logger.info("streaming the game to " + path);
+            } catch (IOException e) {
+                logger.severe("cannot stream the game to " + path + ": " + e);
+            }
+        }, "spectator-pipe");
+        opener.setDaemon(true);
+        opener.start();
+    }
+
+    private void run() {
+        long frameNanos = 1_000_000_000L / config.frameRate;
+        while (!disposed) {
+            LockSupport.parkNanos(frameNanos);
+            frame();
+        }
+        frame(); // the last changes (e.g. the winners)
+    }
+
+    /**
+     * Encodes the changes of the last frame and sends them to the sinks, and the snapshot to the joining sinks.
+     */
+    private void frame() {
+        byte[] delta = null, snapshot = null;
+        List<Sink> joined = new ArrayList<>();
+        synchronized (this) {
+            if (changed) {
+                delta = encode(DELTA, ++sequence, false);
+                changed = false;
+            }
+            for (Sink sink; (sink = joining.poll()) != null; ) joined.add(sink);
+            if (!joined.isEmpty()) snapshot = snapshot();
+        }
+        if (delta != null) send(sinks, delta);
+        if (snapshot != null) {
+            send(joined, snapshot);
+            sinks.addAll(joined);
+        }
+    }
+
+    private void send(List<Sink> sinks, byte[] frame) {
+        for (int i = sinks.size() - 1; i >= 0; i--) {
+            try {
+                sinks.get(i).send(frame);
+            } catch (IOException e) {
+                logger.warning("spectator left the stream: " + e.getMessage());
+                sinks.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Encodes the changed parts of the model (or all of it) and marks them unchanged (called while holding this).
+     */
+    private byte[] encode(byte type, int sequence, boolean all) {
+        int slots = 0, players = 0;
+        for (boolean slot : slotChanged) if (slot || all) slots++;
+        for (boolean player : scoreChanged) if (player || all) players++;
+        int flags = all ? COUNTDOWN_CHANGED | WINNERS_CHANGED : this.flags;
+        int tokenBytes = (config.players + 7) / 8;
+        ByteBuffer frame = ByteBuffer.allocate(1 + 4 + 2 + slots * (6 + tokenBytes) + 2 + players * 6 + 1 + 9
+                + 2 + 2 * winners.length);
+        frame.put(type).putInt(sequence).putShort((short) slots);
+        for (int slot = 0; slot < cards.length; slot++) {
+            if (!slotChanged[slot] && !all) continue;
+            frame.putShort((short) slot).putInt(cards[slot]).put(tokens[slot]);
+            if (!all) slotChanged[slot] = false;
+        }
+        frame.putShort((short) players);
+        for (int player = 0; player < scores.length; player++) {
+            if (!scoreChanged[player] && !all) continue;
+            frame.putShort((short) player).putInt(scores[player]);
+            if (!all) scoreChanged[player] = false;
+        }
+        frame.put((byte) flags);
+        if ((flags & COUNTDOWN_CHANGED) != 0) frame.putLong(countdown).put((byte) (warn ? 1 : 0));
+        if ((flags & WINNERS_CHANGED) != 0) {
+            frame.putShort((short) winners.length);
+            for (int winner : winners) frame.putShort((short) winner);
+        }
+        if (!all) this.flags = 0;
+        return Arrays.copyOf(frame.array(), frame.position());
+    }
+
+    private void slotChanged(int slot) {
+        slotChanged[slot] = true;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void placeCard(int card, int slot) {
+        cards[slot] = card;
+        slotChanged(slot);
+    }
+
+    @Override
+    public synchronized void removeCard(int slot) {
+        cards[slot] = -1;
+        slotChanged(slot);
+    }
+
+    @Override
+    public synchronized void placeToken(int player, int slot) {
+        tokens[slot][player >>> 3] |= (byte) (1 << (player & 7));
+        slotChanged(slot);
+    }
+
+    @Override
+    public synchronized void removeTokens() {
+        for (int slot = 0; slot < tokens.length; slot++) removeTokens(slot);
+    }
+
+    @Override
+    public synchronized void removeTokens(int slot) {
+        Arrays.fill(tokens[slot], (byte) 0);
+        slotChanged(slot);
+    }
+
+    @Override
+    public synchronized void removeToken(int player, int slot) {
+        tokens[slot][player >>> 3] &= (byte) ~(1 << (player & 7));
+        slotChanged(slot);
+    }
+
+    @Override
+    public synchronized void setCountdown(long millies, boolean warn) {
+        countdown = millies;
+        this.warn = warn;
+        flags |= COUNTDOWN_CHANGED;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setElapsed(long millies) { // streamed as the countdown
+        setCountdown(millies, false);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {}
+
+    @Override
+    public synchronized void setScore(int player, int score) {
+        scores[player] = score;
+        scoreChanged[player] = true;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void announceWinner(int[] players) {
+        winners = players.clone();
+        flags |= WINNERS_CHANGED;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (int slot = 0; slot < cards.length; slot++) {
+            cards[slot] = -1;
+            Arrays.fill(tokens[slot], (byte) 0);
+            slotChanged(slot);
+        }
+        for (int player = 0; player < scores.length; player++) setScore(player, 0);
+        announceWinner(new int[0]);
+    }
+
+    /**
+     * Sends the last changes and stops the stream.
+     */
+    @Override
+    public void dispose() {
+        disposed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
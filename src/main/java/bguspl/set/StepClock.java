@@ -0,0 +1,49 @@
+package bguspl.set;
+
+/**
+ * The virtual clock of a game stepped on a single thread (see config.steppedEngine).
+ * Nothing else can happen while the stepping thread sleeps or waits, so sleeping and waiting simply move the time
+ * forward, and the scheduler moves it to the time of the next step.
+ */
+public class StepClock implements Clock {
+
+    /**
+     * The current virtual time in milliseconds.
+     */
+    private volatile long now;
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public void sleep(long millis) {
+        if (millis > 0) now += millis;
+    }
+
+    @Override
+    public void await(Object monitor, long millis) {
+        if (millis <= 0) throw new IllegalStateException("a single thread cannot wait to be signalled");
+        now += millis;
+    }
+
+    @Override
+    public void signalAll(Object monitor) {
+        // nobody waits: the game runs on a single thread
+    }
+
+    @Override
+    public Runnable participant(Runnable task) {
+        return task;
+    }
+
+    /**
+     * Moves the time forward to the given time (the time never goes back).
+     *
+     * @param millis - the time to move to in milliseconds.
+     */
+    public void advanceTo(long millis) {
+        if (millis > now) now = millis;
+    }
+}
@@ -1,5 +1,7 @@
 package bguspl.set;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 public class ThreadLogger extends Thread {
@@ -24,6 +26,31 @@ public class ThreadLogger extends Thread {
         }
     }
 
+    /**
+     * Submits a task to a thread pool. While the task runs, the pooled thread carries the given name and the task's
+     * start and termination are logged, same as for a dedicated ThreadLogger thread.
+     *
+     * @param executor - the thread pool to run the task on.
+     * @param target   - the task.
+     * @param name     - the name of the thread while running the task.
+     * @param logger   - the logger to log the start and termination of the task with.
+     * @return - a future for joining the task.
+     */
+    public static Future<?> submitWithLog(ExecutorService executor, Runnable target, String name, Logger logger) {
+        return executor.submit(() -> {
+            Thread thread = Thread.currentThread();
+            String poolName = thread.getName();
+            thread.setName(name);
+            logStart(logger, name);
+            try {
+                target.run();
+            } finally {
+                logStop(logger, name);
+                thread.setName(poolName);
+            }
+        });
+    }
+
     public static void logStart(Logger logger, String name) {
         logger.info("thread " + name + " starting.");
     }
@@ -0,0 +1,300 @@
+package bguspl.set;
+
+import bguspl.set.ex.GameSession;
+import bguspl.set.ex.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Compares the strategies of the computer players (see bguspl.set.ex.Strategy) by playing config.tournamentGames games
+ * with every line-up of config.tournamentLineups, headless and on all the cores (config.hostConcurrency games at a
+ * time). Every game is played by the threaded engine (a session of a single game, with its own environment, table,
+ * dealer and players) with the delays removed and in virtual time as in a Simulation; the stepped engine is not used,
+ * since its computer players ignore the strategies. All the line-ups play the same seeds, so every game of a seed
+ * starts from the same deal, but the cards dealt later depend on the timing of the threads and the moves of the
+ * players, so the line-ups are compared on the same first deals only. The report gives, for every line-up, the sets
+ * and claims per game, the latency of the claim verdicts and the win rate and score of every player, with their 95%
+ * confidence intervals (a shared win counts as a win of every winner). Any configuration value can be overridden on
+ * the command line as Key=Value.
+ */
+public class Tournament {
+
+    private final Logger logger;
+
+    /**
+     * The tournament configuration, and the configuration of the games of every line-up.
+     */
+    private final Config config;
+    private final Config[] lineupConfigs;
+
+    /**
+     * The results of every line-up.
+     */
+    private final Lineup[] lineups;
+
+    /**
+     * The seeds of the games (played by every line-up).
+     */
+    private final long[] seeds;
+
+    /**
+     * The pool running the dealer, player and computer player threads of all the games.
+     */
+    private final ExecutorService workers = Env.newWorkerPool();
+
+    /**
+     * The pool running the games (config.hostConcurrency at a time).
+     */
+    private final ExecutorService runners;
+
+    /**
+     * The sessions of the games currently running.
+     */
+    private final List<GameSession> sessions = new ArrayList<>();
+
+    /**
+     * True iff the tournament should be terminated.
+     */
+    private volatile boolean terminate;
+
+    /**
+     * The time it took to play all the games.
+     */
+    private long elapsedNanos;
+
+    /**
+     * @param properties - the configuration properties of the tournament and its games.
+     */
+    public Tournament(Logger logger, Properties properties) {
+        this.logger = logger;
+        this.config = new Config(logger, properties);
+        this.runners = Executors.newFixedThreadPool(config.hostConcurrency);
+        if (config.steppedEngine)
+            logger.severe("warning: the stepped engine ignores the computer strategies, using the threaded engine.");
+        lineupConfigs = new Config[config.tournamentLineups.length];
+        lineups = new Lineup[lineupConfigs.length];
+        for (int i = 0; i < lineups.length; i++) {
+            String[] strategies = config.tournamentLineups[i].split(",");
+            Properties lineup = new Properties();
+            lineup.putAll(properties);
+            lineup.setProperty("HumanPlayers", "0");
+            lineup.setProperty("ComputerPlayers", Integer.toString(strategies.length));
+            lineup.setProperty("ComputerStrategies", config.tournamentLineups[i]);
+            lineup.setProperty("Games", "1");
+            lineup.setProperty("LatencyTracing", "True");
+            lineup.setProperty("CheckpointFile", "");
+            lineup.setProperty("SteppedEngine", "False");
+            lineupConfigs[i] = Simulation.simulationConfig(logger, lineup);
+            lineups[i] = new Lineup(lineupConfigs[i]);
+        }
+        Random random = config.seed != 0 ? new Random(config.seed) : new Random();
+        seeds = new long[Math.max(config.tournamentGames, 0)];
+        for (int game = 0; game < seeds.length; game++) seeds[game] = random.nextLong();
+    }
+
+    /**
+     * Plays all the games of all the line-ups and waits for them to finish.
+     */
+    public void run() {
+        long start = System.nanoTime();
+        List<Future<?>> games = new ArrayList<>();
+        for (long seed : seeds) // the line-ups take turns, so an interrupted tournament still compares them
+            for (int lineup = 0; lineup < lineups.length; lineup++) {
+                int index = lineup;
+                games.add(runners.submit(() -> play(index, seed)));
+            }
+
+        for (Future<?> game : games) {
+            try {
+                game.get();
+            } catch (InterruptedException e) {
+                terminate();
+            } catch (ExecutionException e) { // one failed game does not affect the others
+                logger.severe("tournament game failed: " + e.getCause());
+            }
+        }
+        runners.shutdown();
+        workers.shutdown();
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Plays a single game of a line-up and adds its results.
+     */
+    private void play(int lineup, long seed) {
+        if (terminate) return;
+        Config config = lineupConfigs[lineup];
+        Util util = new UtilImpl(config);
+        GameStats stats = new GameStats();
+        Env env = new Env(logger, config, UserInterfaceDecorator.logOnly(logger, util), util, workers, stats,
+                Env.newClock(config));
+        GameSession session = new GameSession(env, new Player[config.players], seed);
+        synchronized (sessions) {
+            if (terminate) return;
+            sessions.add(session);
+        }
+        session.run();
+        synchronized (sessions) {
+            sessions.remove(session);
+        }
+        if (stats.games() > 0) lineups[lineup].add(env, stats); // played to its end
+    }
+
+    /**
+     * Terminates all the games.
+     */
+    public void terminate() {
+        terminate = true;
+        synchronized (sessions) {
+            for (GameSession session : sessions) session.terminate();
+        }
+    }
+
+    /**
+     * @return - a human readable report of the results of every line-up.
+     */
+    public String report() {
+        double seconds = Math.max(elapsedNanos, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+        long games = 0;
+        StringBuilder sb = new StringBuilder();
+        for (Lineup lineup : lineups) {
+            sb.append(lineup.report()).append(System.lineSeparator());
+            games += lineup.games();
+        }
+        return sb.append(String.format("%d games in %.3f seconds: %.2f games/sec", games, seconds, games / seconds))
+                .toString();
+    }
+
+    /**
+     * The mean of a series of samples and its confidence interval.
+     */
+    static class Sample {
+
+        private long count;
+        private double sum;
+        private double sumOfSquares;
+
+        void add(double value) {
+            count++;
+            sum += value;
+            sumOfSquares += value * value;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * @return - the half width of the 95% confidence interval of the mean (normal approximation).
+         */
+        double halfWidth() {
+            if (count < 2) return 0;
+            double variance = Math.max(0, (sumOfSquares - sum * sum / count) / (count - 1));
+            return 1.96 * Math.sqrt(variance / count);
+        }
+
+        String format(double scale, String unit) {
+            return String.format("%.2f%s +- %.2f%s", mean() * scale, unit, halfWidth() * scale, unit);
+        }
+    }
+
+    /**
+     * The results of the games of a line-up (added by the runner threads).
+     */
+    private static class Lineup {
+
+        private final Config config;
+        private final Sample[] wins;
+        private final Sample[] scores;
+        private final Sample sets = new Sample();
+        private final Sample claims = new Sample();
+
+        /**
+         * The mean claim verdict latency of every game, and the latencies of all the claims.
+         */
+        private final Sample latency = new Sample();
+        private final LatencyHistogram verdicts = new LatencyHistogram();
+
+        Lineup(Config config) {
+            this.config = config;
+            wins = new Sample[config.players];
+            scores = new Sample[config.players];
+            for (int player = 0; player < config.players; player++) {
+                wins[player] = new Sample();
+                scores[player] = new Sample();
+            }
+        }
+
+        synchronized void add(Env env, GameStats stats) {
+            int best = 0, total = 0;
+            for (int player = 0; player < config.players; player++) {
+                best = Math.max(best, env.leaderboard.score(player));
+                total += env.leaderboard.score(player);
+            }
+            for (int player = 0; player < config.players; player++) {
+                int score = env.leaderboard.score(player);
+                wins[player].add(score == best ? 1 : 0);
+                scores[player].add(score);
+            }
+            sets.add(total);
+            claims.add(stats.claims());
+            LatencyHistogram game = env.latency.histogram(LatencyTracker.Stage.CLAIM_VERDICT);
+            if (game.count() > 0) latency.add(game.mean());
+            verdicts.add(game);
+        }
+
+        synchronized long games() {
+            return sets.count;
+        }
+
+        synchronized String report() {
+            StringBuilder sb = new StringBuilder(String.format("line-up %s: %d games, %s sets/game, %s claims/game, "
+                            + "claim verdict %s (p50=%dus p99=%dus)", String.join(",", strategies()), sets.count,
+                    sets.format(1, ""), claims.format(1, ""), latency.format(1e-3, "us"),
+                    TimeUnit.NANOSECONDS.toMicros(verdicts.percentile(50)),
+                    TimeUnit.NANOSECONDS.toMicros(verdicts.percentile(99))));
+            for (int player = 0; player < config.players; player++)
+                sb.append(String.format("%n  player %d %-8s wins %s, score %s", player + 1,
+                        config.computerStrategy(player), wins[player].format(100, "%"),
+                        scores[player].format(1, "")));
+            return sb.toString();
+        }
+
+        private String[] strategies() {
+            String[] strategies = new String[config.players];
+            for (int player = 0; player < strategies.length; player++)
+                strategies[player] = config.computerStrategy(player);
+            return strategies;
+        }
+    }
+
+    /**
+     * The tournament's main function.
+     *
+     * @param args - configuration values overriding the configuration file, as Key=Value.
+     */
+    public static void main(String[] args) {
+        Logger logger = Logger.getLogger("SetGameTournament");
+        logger.setUseParentHandlers(false);
+        Properties properties = Config.loadProperties("config.properties", logger);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals > 0) properties.setProperty(arg.substring(0, equals).trim(), arg.substring(equals + 1).trim());
+            else System.err.println("ignoring " + arg + " (expected Key=Value)");
+        }
+
+        Tournament tournament = new Tournament(logger, properties);
+        Runtime.getRuntime().addShutdownHook(new Thread(tournament::terminate));
+        tournament.run();
+        System.out.println(tournament.report());
+    }
+}
@@ -80,6 +80,11 @@ public interface UserInterface {
      */
     void announceWinner(int[] players);
 
+    /**
+     * Clear the table, the tokens, the scores and the winner announcement before a new game (rematch) starts.
+     */
+    void reset();
+
     /**
      * Programmatically closes the window.
      */
@@ -4,8 +4,6 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
@@ -15,6 +13,9 @@ import static java.lang.String.format;
 
 /**
  * Java Swing implementation of the UserInterface interface.
+ * The UserInterface methods may be called from any thread: they only update the state the window should show and
+ * mark what changed. A Swing timer on the event dispatch thread paints the changes at most config.frameRate times per
+ * second, repainting only the changed cells, so a fast game does not flood the event queue with repaints.
  */
 public class UserInterfaceSwing extends JFrame implements UserInterface {
 
@@ -24,6 +25,81 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final WinnerPanel winnerPanel;
     private final Config config;
 
+    /**
+     * The card images, loaded in the background when the cards are placed.
+     */
+    private final CardImages images;
+
+    /**
+     * The state the window should show, guarded by itself (written by the game threads, read by the frame timer).
+     */
+    private final State state;
+
+    /**
+     * The copy of the changed state the current frame paints (used by the event dispatch thread only).
+     */
+    private final State frame;
+
+    /**
+     * Paints the changed state on the event dispatch thread, once per frame.
+     */
+    private final Timer frameTimer;
+
+    /**
+     * The state shown by the window, and which parts of it changed since the last frame.
+     */
+    private static class State {
+        final int[] cards;          // the card per slot (-1 if none)
+        final boolean[][] tokens;   // the tokens per slot and player
+        final boolean[] slotsChanged;
+        long timerMillies;
+        boolean timerWarn, timerElapsed, timerChanged;
+        final long[] freezes;
+        final int[] scores;
+        final boolean[] playersChanged;
+        int[] winners;              // null while the game is played
+        boolean winnersChanged;
+        boolean changed;            // true iff any of the above changed
+
+        State(Config config) {
+            cards = new int[config.tableSize];
+            Arrays.fill(cards, -1);
+            tokens = new boolean[config.tableSize][config.players];
+            slotsChanged = new boolean[config.tableSize];
+            freezes = new long[config.players];
+            scores = new int[config.players];
+            playersChanged = new boolean[config.players];
+        }
+
+        /**
+         * Moves the changes to another state (the changes are cleared).
+         */
+        void moveChangesTo(State other) {
+            for (int slot = 0; slot < cards.length; slot++) {
+                other.slotsChanged[slot] = slotsChanged[slot];
+                if (!slotsChanged[slot]) continue;
+                other.cards[slot] = cards[slot];
+                System.arraycopy(tokens[slot], 0, other.tokens[slot], 0, tokens[slot].length);
+                slotsChanged[slot] = false;
+            }
+            other.timerChanged = timerChanged;
+            other.timerMillies = timerMillies;
+            other.timerWarn = timerWarn;
+            other.timerElapsed = timerElapsed;
+            timerChanged = false;
+            for (int player = 0; player < scores.length; player++) {
+                other.playersChanged[player] = playersChanged[player];
+                other.freezes[player] = freezes[player];
+                other.scores[player] = scores[player];
+                playersChanged[player] = false;
+            }
+            other.winnersChanged = winnersChanged;
+            other.winners = winners;
+            winnersChanged = false;
+            changed = false;
+        }
+    }
+
     static String intInBaseToPaddedString(int n, int padding, int base) {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
     }
@@ -31,6 +107,9 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
 
         this.config = config;
+        state = new State(config);
+        frame = new State(config);
+        images = new CardImages(logger, config, this::cardLoaded);
         timerPanel = new TimerPanel();
         gamePanel = new GamePanel();
         playersPanel = new PlayersPanel();
@@ -66,7 +145,49 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         addKeyListener(new InputManager(logger, config, players));
         addWindowListener(new WindowManager());
 
+        frameTimer = new Timer(1000 / config.frameRate, event -> paintFrame());
         EventQueue.invokeLater(() -> setVisible(true));
+        frameTimer.start();
+    }
+
+    /**
+     * Called by a card loader thread once the image of a card is loaded.
+     */
+    private void cardLoaded(int card) {
+        EventQueue.invokeLater(() -> gamePanel.repaintCard(card));
+    }
+
+    /**
+     * Paints the changes since the last frame (on the event dispatch thread).
+     */
+    private void paintFrame() {
+        synchronized (state) {
+            if (!state.changed) return;
+            state.moveChangesTo(frame);
+        }
+
+        for (int slot = 0; slot < config.tableSize; slot++)
+            if (frame.slotsChanged[slot]) gamePanel.paintSlot(slot, frame.cards[slot], frame.tokens[slot]);
+        if (frame.timerChanged) {
+            if (frame.timerElapsed) timerPanel.setElapsed(frame.timerMillies);
+            else timerPanel.setCountdown(frame.timerMillies, frame.timerWarn);
+        }
+        for (int player = 0; player < config.players; player++)
+            if (frame.playersChanged[player]) {
+                playersPanel.setFreeze(player, frame.freezes[player]);
+                playersPanel.setScore(player, frame.scores[player]);
+            }
+        if (frame.winnersChanged) {
+            if (frame.winners != null) {
+                winnerPanel.announceWinner(frame.winners);
+                playersPanel.setVisible(false);
+                winnerPanel.setVisible(true);
+            } else {
+                winnerPanel.setVisible(false);
+                playersPanel.setVisible(true);
+                timerPanel.setVisible(true);
+            }
+        }
     }
 
     private class TimerPanel extends JPanel {
@@ -102,39 +223,23 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     private class GamePanel extends JLayeredPane {
 
-        private final Image emptyCard;
-        private final Image[] deck;
-        private final Image[][] grid;
-        private final boolean[][][] playerTokens;
+        /**
+         * The card per cell of the grid (-1 if none).
+         */
+        private final int[][] grid;
         private final JLabel[][] tokenText;
 
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
-
         private GamePanel() {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
-
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
-
-            grid = new Image[config.rows][config.columns];
+            // the card images are loaded when the cards are placed (see CardImages)
+            grid = new int[config.rows][config.columns];
             tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
                     // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
+                    grid[row][column] = -1;
 
                     // init the JLabel selection overlay
                     tokenText[row][column] = new JLabel("");
@@ -148,54 +253,21 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
-        private void placeCard(int slot, int card) {
+        /**
+         * Shows a card and its tokens in a slot, and repaints the slot.
+         */
+        private void paintSlot(int slot, int card, boolean[] tokens) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
+            grid[row][column] = card;
+            tokenText[row][column].setText(generatePlayersTokenText(tokens));
+            repaint(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
         }
 
-        private void removeCard(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
-        }
-
-        private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
-        }
-
-        private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
-                removeTokens(i);
-        }
-
-        private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
-            }
-        }
-
-        private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
-        }
-
-        private String generatePlayersTokenText(int row, int column) {
+        private String generatePlayersTokenText(boolean[] tokens) {
             String text = "";
             for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
+                if (tokens[player])
                     text = text.concat(config.playerNames[player] + ", ");
             }
             if (text.length() < 2)
@@ -203,12 +275,32 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             return text.substring(0, text.length() - 2);
         }
 
-        @Override
-        public void paintComponent(Graphics g) {
-            // draw card images
+        /**
+         * Repaints the cells showing a card (once its image is loaded).
+         */
+        private void repaintCard(int card) {
             for (int row = 0; row < config.rows; row++)
                 for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+                    if (grid[row][column] == card)
+                        repaint(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
+        }
+
+        @Override
+        public void paintComponent(Graphics g) {
+            // draw card images (already scaled to the cell size), or empty cards until they are loaded, in the cells
+            // of the repainted area only
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+            int firstRow = Math.max(0, clip.y / config.cellHeight);
+            int lastRow = Math.min(config.rows - 1, (clip.y + clip.height - 1) / config.cellHeight);
+            int firstColumn = Math.max(0, clip.x / config.cellWidth);
+            int lastColumn = Math.min(config.columns - 1, (clip.x + clip.width - 1) / config.cellWidth);
+            for (int row = firstRow; row <= lastRow; row++)
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    Image image = grid[row][column] < 0 ? null : images.get(grid[row][column]);
+                    g.drawImage(image != null ? image : images.emptyCard, (column * config.cellWidth),
+                            (row * config.cellHeight), this);
+                }
         }
     }
 
@@ -276,63 +368,125 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        images.prefetch(card);
+        synchronized (state) {
+            state.cards[slot] = card;
+            slotChanged(slot);
+        }
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        synchronized (state) {
+            state.cards[slot] = -1;
+            slotChanged(slot);
+        }
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        synchronized (state) {
+            state.tokens[slot][player] = true;
+            slotChanged(slot);
+        }
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        synchronized (state) {
+            for (int slot = 0; slot < config.tableSize; slot++) {
+                Arrays.fill(state.tokens[slot], false);
+                slotChanged(slot);
+            }
+        }
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        synchronized (state) {
+            Arrays.fill(state.tokens[slot], false);
+            slotChanged(slot);
+        }
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        synchronized (state) {
+            state.tokens[slot][player] = false;
+            slotChanged(slot);
+        }
+    }
+
+    private void slotChanged(int slot) {
+        state.slotsChanged[slot] = true;
+        state.changed = true;
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        timerPanel.setCountdown(millies, warn);
+        synchronized (state) {
+            state.timerMillies = millies;
+            state.timerWarn = warn;
+            state.timerElapsed = false;
+            state.timerChanged = state.changed = true;
+        }
     }
 
     @Override
     public void setElapsed(long millies) {
-        timerPanel.setElapsed(millies);
+        synchronized (state) {
+            state.timerMillies = millies;
+            state.timerElapsed = true;
+            state.timerChanged = state.changed = true;
+        }
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        synchronized (state) {
+            state.freezes[player] = millies;
+            state.playersChanged[player] = state.changed = true;
+        }
     }
 
     @Override
     public void setScore(int player, int score) {
-        playersPanel.setScore(player, score);
+        synchronized (state) {
+            state.scores[player] = score;
+            state.playersChanged[player] = state.changed = true;
+        }
     }
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        synchronized (state) {
+            state.winners = players.clone();
+            state.winnersChanged = state.changed = true;
+        }
+    }
+
+    @Override
+    public void reset() {
+        synchronized (state) {
+            for (int slot = 0; slot < config.tableSize; slot++) {
+                state.cards[slot] = -1;
+                Arrays.fill(state.tokens[slot], false);
+                state.slotsChanged[slot] = true;
+            }
+            for (int player = 0; player < config.players; player++) {
+                state.freezes[player] = 0;
+                state.scores[player] = 0;
+                state.playersChanged[player] = true;
+            }
+            state.winners = null;
+            state.winnersChanged = state.changed = true;
+        }
     }
 
     @Override
     public void dispose() {
+        frameTimer.stop();
+        images.dispose();
         super.dispose();
     }
 }
@@ -64,28 +64,71 @@ public class UtilImpl implements Util {
         return true;
     }
 
+    /**
+     * Finds the sets by completion: the last card of a set is determined by the other featureSize - 1 cards (each
+     * feature is either the same as on all of them, or the one value missing from them), so only the combinations of
+     * featureSize - 1 cards are enumerated (pairs in the classic game, n^2 rather than n^3), and the completing card
+     * is looked up in the sorted cards. The cards and their features are kept in primitive arrays.
+     */
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
-        int r = config.featureSize;
-        int[] combination = new int[r];
-
-        for (int i = 0; i < r; ++i)
+        int n = deck.size(), r = config.featureSize, f = config.featureCount, m = r - 1;
+        if (n < r || count <= 0) return sets;
+
+        int[] cards = new int[n];
+        int index = 0;
+        for (int card : deck) cards[index++] = card;
+        Arrays.sort(cards);
+        if (m == 1) { // with two choices per feature, any two different cards are a set
+            for (int i = 0; i < n; i++)
+                for (int j = i + 1; j < n; j++) {
+                    sets.add(new int[]{cards[i], cards[j]});
+                    if (sets.size() >= count) return sets;
+                }
+            return sets;
+        }
+        byte[] features = new byte[n * f];
+        for (int i = 0; i < n; i++)
+            for (int j = f - 1, card = cards[i]; j >= 0; j--, card /= r)
+                features[i * f + j] = (byte) (card % r);
+        long allValues = r == 64 ? -1L : (1L << r) - 1;
+
+        // the positions of the first featureSize - 1 cards of a set (the completing card comes after them)
+        int[] combination = new int[m];
+        for (int i = 0; i < m; ++i)
             combination[i] = i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
+        while (combination[m - 1] < n - 1) {
+            int completion = 0, j;
+            for (j = 0; j < f; j++) {
+                int first = features[combination[0] * f + j];
+                boolean same = true, distinct = true;
+                long values = 0;
+                for (int t = 0; t < m; t++) {
+                    int value = features[combination[t] * f + j];
+                    same &= value == first;
+                    distinct &= (values & 1L << value) == 0;
+                    values |= 1L << value;
+                }
+                if (same) completion = completion * r + first;
+                else if (distinct) completion = completion * r + Long.numberOfTrailingZeros(~values & allValues);
+                else break; // no card completes this combination
+            }
+            if (j == f && completion > cards[combination[m - 1]]
+                    && Arrays.binarySearch(cards, combination[m - 1] + 1, n, completion) >= 0) {
+                int[] set = new int[r];
+                for (int t = 0; t < m; t++) set[t] = cards[combination[t]];
+                set[m] = completion;
+                sets.add(set);
                 if (sets.size() >= count) return sets;
             }
 
-            // generate next combination in lexicographic order
-            int t = r - 1;
-            while (t != 0 && combination[t] == n - r + t) --t;
+            // generate next combination in lexicographic order (of the positions before the last card)
+            int t = m - 1;
+            while (t != 0 && combination[t] == n - 1 - m + t) --t;
             combination[t]++;
-            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+            for (int i = t + 1; i < m; i++) combination[i] = combination[i - 1] + 1;
         }
         return sets;
     }
@@ -0,0 +1,314 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A discrete-event clock for accelerated simulations.
+ * The virtual time stands still while any participant thread is working, and jumps straight to the nearest deadline
+ * once all the participants are idle. This way sleeps and timeouts of any length take no real time.
+ * A participant waiting through this clock is known to be idle, but one blocked outside the clock (on a monitor, e.g.
+ * held by a participant waiting through the clock) is only presumed idle once it stayed blocked, with nothing else
+ * changing, for a poll of POLL_MILLIS real time. So the events happen in the order they would in real time only as
+ * far as this heuristic holds, and runs in virtual time are not deterministic (the stepped engine is, see
+ * config.steppedEngine).
+ * Note: threads that are not participants (e.g. the keyboard input of human players) do not hold the time back.
+ */
+public class VirtualClock implements Clock {
+
+    /**
+     * A thread waiting through the clock.
+     */
+    private static class Waiter {
+
+        /**
+         * The monitor the thread waits on (null for a sleep, which parks the thread instead).
+         */
+        private final Object monitor;
+
+        /**
+         * The virtual time the wait times out at (Long.MAX_VALUE if it never does).
+         */
+        private final long deadline;
+
+        /**
+         * True iff the wait was ended (signalled or timed out), i.e. the thread is no longer idle.
+         */
+        private boolean woken;
+
+        private Waiter(Object monitor, long deadline) {
+            this.monitor = monitor;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * The real time (in milliseconds) between checks for idle participants that do not wait through the clock.
+     */
+    private static final long POLL_MILLIS = 1;
+
+    /**
+     * Notifies the monitors of timed out waiters (a monitor may be held by an idle participant for a while, so the
+     * timekeeper must not block on it).
+     */
+    private static final ExecutorService notifier = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "virtual-clock-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Guards all the fields below (except for now, which can be read without it).
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The current virtual time in milliseconds.
+     */
+    private volatile long now;
+
+    /**
+     * The number of participant tasks that were submitted but did not start running yet.
+     */
+    private int pending;
+
+    /**
+     * The threads currently running participant tasks.
+     */
+    private final Set<Thread> participants = new HashSet<>();
+
+    /**
+     * The threads currently waiting through the clock.
+     */
+    private final Map<Thread, Waiter> waiters = new HashMap<>();
+
+    /**
+     * Incremented on every change of the participants and waiters (to detect progress).
+     */
+    private long activity;
+
+    /**
+     * The number of timed out waiters whose monitors were not notified yet.
+     */
+    private int notifications;
+
+    /**
+     * The thread advancing the time (null while there are no participants).
+     */
+    private Thread timekeeper;
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    /**
+     * @param start - the virtual time to start from (in milliseconds).
+     */
+    public VirtualClock(long start) {
+        now = start;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * A sleeping thread parks rather than waiting on a monitor, so the timekeeper wakes it up directly once its
+     * deadline is due (no notifier thread in between), and knows it runs again right away.
+     */
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis <= 0) return;
+        Thread thread = Thread.currentThread();
+        Waiter waiter;
+        synchronized (lock) {
+            waiter = new Waiter(null, now + millis > now ? now + millis : Long.MAX_VALUE);
+            waiters.put(thread, waiter);
+            activity++;
+            lock.notifyAll(); // the time may be advanced now
+        }
+        try {
+            while (!isWoken(waiter)) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) throw new InterruptedException("interrupted while sleeping");
+            }
+        } finally {
+            synchronized (lock) {
+                waiters.remove(thread);
+                activity++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void await(Object monitor, long millis) throws InterruptedException {
+        Thread thread = Thread.currentThread();
+        Waiter waiter;
+        synchronized (lock) {
+            long deadline = now + millis;
+            waiter = new Waiter(monitor, millis > 0 && deadline > now ? deadline : Long.MAX_VALUE);
+            waiters.put(thread, waiter);
+            activity++;
+            lock.notifyAll(); // the time may be advanced now
+        }
+        try {
+            while (!isWoken(waiter))
+                monitor.wait();
+        } finally {
+            synchronized (lock) {
+                waiters.remove(thread);
+                activity++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private boolean isWoken(Waiter waiter) {
+        synchronized (lock) {
+            return waiter.woken;
+        }
+    }
+
+    @Override
+    public void signalAll(Object monitor) {
+        synchronized (lock) {
+            for (Waiter waiter : waiters.values())
+                if (waiter.monitor == monitor) waiter.woken = true;
+            activity++;
+            lock.notifyAll();
+        }
+        monitor.notifyAll();
+    }
+
+    @Override
+    public Runnable participant(Runnable task) {
+        synchronized (lock) {
+            pending++;
+            activity++;
+            if (timekeeper == null) {
+                timekeeper = new Thread(this::keepTime, "virtual-clock");
+                timekeeper.setDaemon(true);
+                timekeeper.start();
+            }
+        }
+        return () -> {
+            Thread thread = Thread.currentThread();
+            synchronized (lock) {
+                pending--;
+                participants.add(thread);
+                activity++;
+            }
+            try {
+                task.run();
+            } finally {
+                synchronized (lock) {
+                    participants.remove(thread);
+                    activity++;
+                    lock.notifyAll();
+                }
+            }
+        };
+    }
+
+    /**
+     * The main loop of the timekeeper thread: advances the time whenever all the participants are idle, until there
+     * are no more participants.
+     */
+    private void keepTime() {
+        while (true) {
+            List<Waiter> due;
+            synchronized (lock) {
+                try {
+                    if (pending == 0 && participants.isEmpty()) {
+                        timekeeper = null;
+                        return;
+                    }
+                    long seen = activity;
+                    due = advanceIfIdle();
+                    if (due == null) {
+                        if (seen == activity) lock.wait(POLL_MILLIS); // nothing changed since the check
+                        continue;
+                    }
+                } catch (InterruptedException e) {
+                    timekeeper = null;
+                    return;
+                }
+            }
+            for (Waiter waiter : due)
+                if (waiter.monitor != null) notifier.execute(() -> {
+                    synchronized (waiter.monitor) {
+                        waiter.monitor.notifyAll();
+                    }
+                    synchronized (lock) {
+                        notifications--;
+                        activity++;
+                        lock.notifyAll();
+                    }
+                });
+        }
+    }
+
+    /**
+     * Advances the time to the nearest deadline if all the participants are idle. Must be called with the lock held.
+     *
+     * @return - the waiters that timed out, or null if the time was not advanced.
+     */
+    private List<Waiter> advanceIfIdle() throws InterruptedException {
+        Boolean idle = participantsIdle();
+        if (idle == null) { // some participants are blocked outside the clock, make sure they stay that way
+            long seen = activity;
+            lock.wait(POLL_MILLIS);
+            if (seen != activity || participantsIdle() == Boolean.FALSE) return null;
+        } else if (!idle) return null;
+
+        long next = Long.MAX_VALUE;
+        for (Waiter waiter : waiters.values())
+            if (!waiter.woken && waiter.deadline < next) next = waiter.deadline;
+        if (next == Long.MAX_VALUE) return null; // everybody waits for a signal
+
+        now = next;
+        List<Waiter> due = new ArrayList<>();
+        for (Map.Entry<Thread, Waiter> entry : waiters.entrySet()) {
+            Waiter waiter = entry.getValue();
+            if (waiter.woken || waiter.deadline > now) continue;
+            waiter.woken = true;
+            if (waiter.monitor == null) LockSupport.unpark(entry.getKey());
+            else {
+                due.add(waiter);
+                notifications++;
+            }
+        }
+        activity++;
+        return due;
+    }
+
+    /**
+     * Must be called with the lock held.
+     *
+     * @return - true iff all the participants wait through the clock, false iff some participant is running (or is a
+     * woken sleeper), and null if the rest of the participants are blocked outside the clock (on a monitor or on
+     * another thread, e.g. a woken waiter whose monitor is held by an idle participant), i.e. are presumably idle.
+     */
+    private Boolean participantsIdle() {
+        if (pending > 0 || participants.isEmpty()) return false;
+        boolean exact = notifications == 0;
+        for (Thread participant : participants) {
+            Waiter waiter = waiters.get(participant);
+            if (waiter != null && !waiter.woken) continue;
+            if (waiter != null && waiter.monitor == null) return false; // a woken sleeper runs again right away
+            Thread.State state = participant.getState();
+            if (state == Thread.State.RUNNABLE || state == Thread.State.NEW) return false;
+            exact = false;
+        }
+        return exact ? Boolean.TRUE : null;
+    }
+}
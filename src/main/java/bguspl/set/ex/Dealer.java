@@ -1,13 +1,20 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.LatencyTracker;
+import bguspl.set.ThreadLogger;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
+import java.util.Deque;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 
 /**
  * This class manages the dealer's threads and data
@@ -26,9 +33,25 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The pooled tasks running the players (used to join them in reverse order).
      */
-    private final List<Integer> deck;
+    private final Future<?>[] playerTasks;
+
+    /**
+     * The card ids that are left in the dealer's deck.
+     */
+    private final Deck deck;
+
+    /**
+     * The next cards to be dealt, taken off the deck by the dealer thread ahead of time, so a collected set is
+     * replaced by them as part of the claim, without waiting for the dealer (guarded by this).
+     */
+    private final Deque<Integer> staged = new ArrayDeque<>();
+
+    /**
+     * The source of randomness of the dealer (the deck and empty slots shuffles).
+     */
+    private final Random random;
 
     /**
      * True iff game should be terminated.
@@ -41,9 +64,9 @@ public class Dealer implements Runnable {
     private volatile boolean canPlay= true;
 
     /**
-     * a param for time left to show on screen
+     * a param for time left to show on screen (the clock time the countdown started at, -1 before the first deal)
      */
-    private volatile Date timeStarted = null;
+    private volatile long timeStarted = -1;
 
     /**
      * finished the game
@@ -51,70 +74,214 @@ public class Dealer implements Runnable {
     private volatile boolean isGameFinished = false;
 
 
+    /**
+     * True iff the dealer was woken up (by a collected set) since it last went to sleep.
+     */
+    private boolean wokenUp = false;
+
     /**
      * The time when the dealer needs to reshuffle the deck due to turn timeout.
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
+    /**
+     * The file the game is checkpointed to (null if it is not), the seed of the session and the number of games it
+     * played before this one (written to the checkpoints), and the clock time of the next checkpoint.
+     */
+    private Path checkpointPath;
+    private long sessionSeed;
+    private int sessionGame;
+    private long nextCheckpoint;
+
+    /**
+     * The background write of the last checkpoint (null before the first one). The next checkpoint is not taken before
+     * it is done, so the checkpoints are written one at a time, in the order they were taken.
+     */
+    private volatile Future<?> checkpointWrite;
+
     /*
      * The time of each loop in delear sleep
      */
     private final int sleepTimeForDelearLoopInMilis = 5;
 
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, new Random());
+    }
+
+    /**
+     * @param random - the source of randomness of the dealer (seeded to reproduce the deals of a game).
+     */
+    public Dealer(Env env, Table table, Player[] players, Random random) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
-        java.util.Collections.shuffle(deck);
-    } 
+        this.random = random;
+        this.playerTasks = new Future<?>[players.length];
+        deck = new Deck(env.config.deckSize);
+        deck.shuffle(random);
+    }
 
     /**
      * The dealer thread starts here (main loop for the dealer thread).
      */
     @Override
     public void run() {
-        env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
         for(int i = 0 ; i < players.length ; i++) {//initilizing players 
-            new Thread(players[i]).start();
-            env.logger.info("thread for player " + i + " starting.");
+            playerTasks[i] = ThreadLogger.submitWithLog(env.executor, env.clock.participant(players[i]), "player-" + i,
+                    env.logger);
         }
         while (!shouldFinish()) {
             placeCardsOnTable();
-            if(timeStarted == null){
+            if(timeStarted < 0){
                 updateTimerDisplay(true);
             }
-            canPlay = true;
+            setCanPlay(true);
             timerLoop();
             updateTimerDisplay(false);
             removeAllCardsFromTable();
         }
+        if (isGameFinished) env.stats.gameFinished();
         announceWinners();
-        env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+        terminate();
+        joinPlayers();
+        if (env.latency.isEnabled()) env.logger.info(env.latency.report());
+    }
+
+    /**
+     * Waits for the player threads to finish, in reverse order to the order they were started in.
+     */
+    private void joinPlayers() {
+        for (int playerId = players.length - 1; playerId >= 0; playerId--) {
+            try {
+                if (playerTasks[playerId] != null) playerTasks[playerId].get();
+            } catch (InterruptedException | ExecutionException e) {
+                env.logger.warning("error joining player " + playerId + ": " + e.getMessage());
+            }
+        }
     }
 
     /**
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() < reshuffleTime && !shouldFinish()) {
+        while (!terminate && env.clock.currentTimeMillis() < reshuffleTime && !shouldFinish()) {
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
             removeCardsFromTable();
             placeCardsOnTable();
-            canPlay = true;
+            setCanPlay(true);
+            checkpointIfDue();
+        }
+    }
+
+    /**
+     * Checkpoints the game every config.checkpointMillis (called before the dealer starts).
+     *
+     * @param path - the file to write the checkpoints to.
+     * @param seed - the seed of the game session.
+     * @param game - the number of games the session played before this one.
+     */
+    public void checkpointTo(Path path, long seed, int game) {
+        checkpointPath = path;
+        sessionSeed = seed;
+        sessionGame = game;
+        nextCheckpoint = env.clock.currentTimeMillis() + env.config.checkpointMillis;
+    }
+
+    /**
+     * Takes a checkpoint of the game if one is due, and writes it in the background (called by the dealer thread
+     * between deals, so no card is on its way from the deck to the table).
+     */
+    private void checkpointIfDue() {
+        if (checkpointPath == null || shouldFinish() || env.clock.currentTimeMillis() < nextCheckpoint) return;
+        if (checkpointWrite != null && !checkpointWrite.isDone()) return; // still writing the last one
+        nextCheckpoint = env.clock.currentTimeMillis() + env.config.checkpointMillis;
+        GameCheckpoint checkpoint = checkpoint();
+        checkpointWrite = env.executor.submit(() -> {
+            try {
+                checkpoint.write(checkpointPath);
+            } catch (IOException e) {
+                env.logger.severe("cannot write the checkpoint " + checkpointPath + ": " + e);
+            }
+        });
+    }
+
+    /**
+     * Waits for the background write of the last checkpoint (e.g. before deleting the checkpoint file).
+     */
+    public void awaitCheckpoint() {
+        Future<?> write = checkpointWrite;
+        if (write == null) return;
+        try {
+            write.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            env.logger.severe("cannot write the checkpoint " + checkpointPath + ": " + e.getCause());
+        }
+    }
+
+    /**
+     * @return - a copy of the state of the game (the claims being checked wait for it, the key presses do not).
+     */
+    synchronized GameCheckpoint checkpoint() {
+        int[] slotToCard;
+        synchronized (table) {
+            slotToCard = table.slotToCard.clone();
+        }
+        int[] cards = new int[staged.size() + deck.size()];
+        int i = 0;
+        for (int card : staged) cards[i++] = card;
+        System.arraycopy(deck.toArray(), 0, cards, i, deck.size());
+        int[] scores = new int[players.length];
+        long[] freezes = new long[players.length];
+        for (int player = 0; player < players.length; player++) {
+            scores[player] = env.leaderboard.score(player);
+            freezes[player] = players[player].freezeLeft();
+        }
+        return new GameCheckpoint(sessionSeed, sessionGame, slotToCard, cards, table.tokens(), scores,
+                Math.max(0, getTimeEndOfGame()), freezes);
+    }
+
+    /**
+     * Resumes the game from a checkpoint: deals the cards, places the tokens, sets the scores and the countdown and
+     * freezes the players (called before the dealer starts).
+     */
+    public void restore(GameCheckpoint checkpoint) {
+        deck.set(checkpoint.deck);
+        for (int slot = 0; slot < checkpoint.slotToCard.length; slot++)
+            if (checkpoint.slotToCard[slot] >= 0) table.placeCard(checkpoint.slotToCard[slot], slot);
+        for (int player = 0; player < players.length; player++) {
+            for (int slot : checkpoint.tokens[player]) table.placeToken(player, slot);
+            players[player].restoreFreeze(checkpoint.freezes[player]);
         }
+        env.leaderboard.restore(checkpoint.scores);
+        timeStarted = env.clock.currentTimeMillis() - (env.config.turnTimeoutMillis - checkpoint.timeLeft);
+        env.logger.info("resumed game " + (checkpoint.game + 1) + " with " + deck.size() + " cards in the deck");
     }
 
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
-        canPlay = false;
+        setCanPlay(false);
         terminate = true;
         for (int playerId = players.length - 1; playerId >= 0; playerId--) {
             players[playerId].terminate();
         }
+        synchronized (this) {
+            env.clock.signalAll(this);
+        }
+    }
+
+    /**
+     * Allows or disallows the players to play, and wakes the players up when they are allowed to play again.
+     */
+    private void setCanPlay(boolean canPlay) {
+        boolean couldPlay = this.canPlay;
+        this.canPlay = canPlay;
+        if (canPlay && !couldPlay)
+            for (Player player : players) player.wakeUp();
     }
 
     /**
@@ -144,32 +311,44 @@ public class Dealer implements Runnable {
             return;
         }  
         List<Integer> emptySlots = table.getEmptySlots();
-        java.util.Collections.shuffle(emptySlots);
-        if(emptySlots.size() == env.config.tableSize){
-            canPlay = false;
-        }
+        Collections.shuffle(emptySlots, random);
         for(int i = 0 ; i < emptySlots.size() ; i++) {
-            if(!this.deck.isEmpty()) { //only adding if they are still cards in the deck
-                table.placeCard(deck.remove(0), emptySlots.get(i));
-            }
-        }
-        if (env.config.hints) {
-            synchronized (this){ // I synced this because I don't want anyone to remove cards while using this then I can get null pointer exceptions
-                table.hints();
+            Integer card = nextCard();
+            if(card != null) { //only adding if they are still cards in the deck
+                table.placeCard(card, emptySlots.get(i));
             }
         }
+        stageCards();
+        if (env.config.hints) table.hints(); // computed in the background, on a copy of the table
+    }
+
+    /**
+     * @return - the next card to deal (a staged card first), or null if there are no more cards.
+     */
+    private synchronized Integer nextCard() {
+        if (!staged.isEmpty()) return staged.poll();
+        return deck.isEmpty() ? null : deck.deal();
+    }
+
+    /**
+     * Takes the cards replacing the next collected set off the deck (called by the dealer thread, the only thread
+     * changing the deck).
+     */
+    private synchronized void stageCards() {
+        while (staged.size() < env.config.featureSize && !deck.isEmpty())
+            staged.add(deck.deal());
     }
 
     private synchronized boolean checkIfNoSets(){
         List<Integer> mergedList = new ArrayList<>(table.getNotEmptyCards()); // getting the cards that are on the table
-        mergedList.addAll(deck);
+        mergedList.addAll(deck.asList());
         if(mergedList.size() == 0){
-            canPlay = false;
+            setCanPlay(false);
             isGameFinished = true;
             return true;
         }
         if(env.util.findSets(mergedList, 1).size() == 0 ){ // if this is true that means there are no more sets and we finished the game
-            canPlay = false;
+            setCanPlay(false);
             isGameFinished = true;
             env.logger.info("there are no more sets");
             return true;
@@ -180,38 +359,45 @@ public class Dealer implements Runnable {
     
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until the thread is awakened by a collected set (so the empty slots are refilled right away), the
+     * countdown display needs to change or the turn times out.
      */
-    private void sleepUntilWokenOrTimeout() {
-        long sleepUntil = 400;
-        long sleepLoop = 5;//sleepTimeForDelearLoopInMilis;
-        if(sleepUntil < sleepLoop){
-            sleepLoop = sleepUntil;
-        }
-        if(getTimeEndOfGame() > sleepUntil) {
-            while (!shouldFinish()  && sleepUntil > 0) {
-                try {
-                    sleepUntil = sleepUntil -sleepLoop;
-                    Thread.sleep(sleepLoop); 
-                    updateTimerDisplay(false);
-                } catch (InterruptedException e) {
-                    env.logger.warning("error in thread sleep: " + e.getMessage());
-                }
+    private synchronized void sleepUntilWokenOrTimeout() {
+        long timeLeft = getTimeEndOfGame();
+        long sleepTime = Math.min(timeLeft, timeUntilDisplayChanges(timeLeft));
+        if (!wokenUp && !shouldFinish() && sleepTime > 0) {
+            try {
+                env.clock.await(this, sleepTime);
+            } catch (InterruptedException e) {
+                env.logger.warning("error in thread sleep: " + e.getMessage());
             }
         }
+        wokenUp = false;
+    }
+
+    /**
+     * @return the time until the countdown display shows a different value.
+     */
+    private long timeUntilDisplayChanges(long timeLeft) {
+        if (timeLeft <= env.config.turnTimeoutWarningMillis) return sleepTimeForDelearLoopInMilis; // the display shows milliseconds
+        long untilNextSecond = timeLeft % 1000 + 1;
+        return Math.min(untilNextSecond, timeLeft - env.config.turnTimeoutWarningMillis);
     }
     /*
      * this function is not synced and checks if there is a set,
      * if there is it calles a sync function to verify again if there is a set and then returns that there is and deletes the cards
      */
-    public Boolean checkCardsBasic(int playerIndex) {
+    public Boolean checkCardsBasic(int playerIndex, int epoch) {
+        if (epoch != table.epoch()) return null; // the tokens were placed before the table was redealt
         if( table.playerTokens.get(playerIndex).size() == env.config.featureSize){
+            env.stats.claimSubmitted();
+            env.metrics.claimSubmitted(playerIndex);
             int[] inputSlotArray = table.playerTokens.get(playerIndex).stream()
                 .mapToInt(Integer::intValue)
                 .toArray();
             int[] inputCardArray = new int[inputSlotArray.length];
             for(int i=0; i<inputSlotArray.length; i++){
-                if(table.getCard(inputSlotArray[i]) != null){
+                if(table.getCard(inputSlotArray[i]) != -1){
                     inputCardArray[i] = table.getCard(inputSlotArray[i]);
                 } else{
                     env.logger.warning("we got a card that is not in table1");
@@ -219,23 +405,31 @@ public class Dealer implements Runnable {
             }
             Boolean answer = env.util.testSet(inputCardArray);
             if(answer == true){
-                return checkCards(playerIndex);
+                long stamp = env.latency.stamp();
+                long requested = System.nanoTime();
+                synchronized (this) { // entered here (reentered by checkCards) to measure the wait for the monitor
+                    env.metrics.dealerMonitorWaited(System.nanoTime() - requested);
+                    answer = checkCards(playerIndex, epoch);
+                }
+                env.metrics.claimValidated(System.nanoTime() - requested);
+                env.latency.record(LatencyTracker.Stage.CLAIM_VALIDATION, stamp);
             }
-            return false;
+            return answer;
         }
         return null;
     }
 
 // 2 players can call this function, and I want only one to call this at a time so this needs to be sync
-    public synchronized Boolean checkCards(int playerIndex) {
-        //update check players cards if needed
+    public synchronized Boolean checkCards(int playerIndex, int epoch) {
+        //update check players cards if needed (the reshuffles hold the dealer's lock, so the epoch cannot change here)
+        if (epoch != table.epoch()) return null;
         if( table.playerTokens.get(playerIndex).size() == env.config.featureSize){
             int[] inputSlotArray = table.playerTokens.get(playerIndex).stream()
                 .mapToInt(Integer::intValue)
                 .toArray();
             int[] inputCardArray = new int[inputSlotArray.length];
             for(int i=0; i<inputSlotArray.length; i++){
-                if(table.getCard(inputSlotArray[i]) != null){
+                if(table.getCard(inputSlotArray[i]) != -1){
                     inputCardArray[i] = table.getCard(inputSlotArray[i]);
                 } else{
                     env.logger.warning("we got a card that is not in table1");
@@ -248,12 +442,17 @@ public class Dealer implements Runnable {
             }
             Boolean answer = env.util.testSet(inputCardArray);//setting inside the legale set the result of validation
             if(answer == true){//if the answer is true, we remove the cards from table
+                env.stats.setCollected();
                 for(int slotIndex:inputSlotArray){
-                    env.logger.warning("got a set for cards: ");
-                    env.logger.warning("$$$$ " + table.slotToCard[slotIndex]);
-                    table.removeCard(slotIndex);
+                    env.log.log(Level.FINE, "player {} collected card {} from slot {}", playerIndex,
+                            table.slotToCard[slotIndex], slotIndex);
+                    Integer card = staged.poll();
+                    if (card != null) table.replaceCard(slotIndex, card); // the slot is playable again right away
+                    else table.removeCard(slotIndex);
                 }
                 updateTimerDisplay(true);
+                wokenUp = true;
+                env.clock.signalAll(this); // wake the dealer up to stage the next cards (and refill the slots left empty)
             }   
             return answer;
         }
@@ -269,22 +468,28 @@ public class Dealer implements Runnable {
             return;
         }
         if(reset){// if we restart we create a new date and update the countDown
-            timeStarted = new Date();
+            timeStarted = env.clock.currentTimeMillis();
             env.ui.setCountdown(env.config.turnTimeoutMillis, shouldSetWarn(env.config.turnTimeoutMillis));
         } else{
             long timeLeft = getTimeEndOfGame();
             if(timeLeft <= 0 ){// if we got timeout we restart by removing cards, shuffling deck placing cards and restart time, this needs to be synced so no one will try to get a set at this time
-                synchronized(this){
-                    canPlay = false;
-                    env.ui.setCountdown(0, shouldSetWarn(0));
-                    removeAllCardsFromTable();
-                    Collections.shuffle(deck);
-                    if(checkIfNoSets()){
-                        return;
+                long started = System.nanoTime();
+                synchronized(this){ // the players keep playing: their claims on the old cards are stale (see Table::epoch)
+                    try {
+                        env.ui.setCountdown(0, shouldSetWarn(0));
+                        removeAllCardsFromTable();
+                        deck.shuffle(random);
+                        env.stats.reshuffled();
+                        env.journal.reshuffle(table.journalGame, deck.size());
+                        if(checkIfNoSets()){
+                            return;
+                        }
+                        placeCardsOnTable();
+                        updateTimerDisplay(true);
+                        setCanPlay(true);
+                    } finally {
+                        env.metrics.reshuffled(System.nanoTime() - started);
                     }
-                    placeCardsOnTable();
-                    updateTimerDisplay(true);
-                    canPlay = true;
                 }
             }else{//if there is no timeout update timer
                 env.ui.setCountdown(timeLeft, shouldSetWarn(timeLeft));
@@ -295,7 +500,7 @@ public class Dealer implements Runnable {
      * getting the time until end of the game
      */
     private long getTimeEndOfGame(){
-        long timeOfGameRuning = new Date().getTime() -  timeStarted.getTime();
+        long timeOfGameRuning = env.clock.currentTimeMillis() - timeStarted;
         long timeLeft = env.config.turnTimeoutMillis - timeOfGameRuning;
         return timeLeft;
     }
@@ -310,60 +515,32 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private synchronized void removeAllCardsFromTable() {
-        if(shouldFinish()){//todo delete all of this
-            int sum = 0;
-            for(Player player: players){
-                sum = sum +player.score();
-                System.out.println(player.score());
-            }
-            System.out.println(table.getNotEmptyCards().size());
-            System.out.println(sum*env.config.featureSize + table.getNotEmptyCards().size()+deck.size());
-            // try {
-            //     Thread.sleep(5000); 
-            // } catch (InterruptedException e) {
-            //     env.logger.warning("error in thread sleep: " + e.getMessage());
-            // }
-       }
+        while (!staged.isEmpty()) deck.returnToHead(staged.pollLast()); // back on top of the deck, in order
         for(int i = 0 ; i < env.config.tableSize ; i++) {
-            if(table.slotToCard[i] != null){
-                env.logger.warning("%%%% " + table.slotToCard[i]);
-                deck.add(table.slotToCard[i]);
+            if(table.slotToCard[i] != -1){
+                env.log.log(Level.FINE, "returning card {} from slot {} to the deck", table.slotToCard[i], i);
+                deck.returnToTail(table.slotToCard[i]);
                 table.removeCard(i);  
             }
         }
+        table.advanceEpoch(); // once the old cards are gone, so a key pressed while one was still shown is stale too
     }
 
     /**
      * Check who is/are the winner/s and displays them.
      */
     private synchronized void announceWinners() {
-        canPlay = false;
+        setCanPlay(false);
         if(terminate == true){
             return; //if we got here because this was terminated we don't want to wait for announce 
         }
-        int maxScoer = -1;
-        for(Player player: players){
-            if(player.score() > maxScoer){
-                maxScoer = player.score();
-            }
-        }
-        List<Integer> winnerList = new ArrayList<>();
-        for(Player player: players){
-            if(player.score() == maxScoer){
-                winnerList.add(player.id);
-            }
-        }
-         // converting List to Array
-         int[] winnerArrayId = winnerList.stream()
-                .mapToInt(Integer::intValue)
-                .toArray();
-        env.ui.announceWinner(winnerArrayId);
+        env.ui.announceWinner(env.leaderboard.leaders());
         long sleepUntil = env.config.endGamePauseMillies;
         long sleepLoop = sleepTimeForDelearLoopInMilis;
         while (sleepUntil > 0 && !terminate) {//sleep until finish
             try {
                 sleepUntil = sleepUntil -sleepLoop;
-                Thread.sleep(sleepLoop); 
+                env.clock.sleep(sleepLoop);
             } catch (InterruptedException e) {
                 env.logger.warning("error in thread sleep: " + e.getMessage());
             }
@@ -0,0 +1,117 @@
+package bguspl.set.ex;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The cards left in the deck of a dealer, kept unboxed: the cards are cards[head] ... cards[tail - 1] and are dealt
+ * from the head, so dealing a card is O(1) and the whole deck takes 4 bytes per card. The deck never holds more than
+ * the cards it was created with, so a card returned to the deck always fits.
+ */
+class Deck {
+
+    private final int[] cards;
+
+    private int head;
+
+    private int tail;
+
+    /**
+     * Creates a deck of the cards 0 ... size - 1 (in this order).
+     */
+    Deck(int size) {
+        cards = new int[size];
+        for (int card = 0; card < size; card++) cards[card] = card;
+        tail = size;
+    }
+
+    int size() {
+        return tail - head;
+    }
+
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * @return - the card at the head of the deck (taken off the deck), or -1 if the deck is empty.
+     */
+    int deal() {
+        return head < tail ? cards[head++] : -1;
+    }
+
+    /**
+     * Puts a card back on the head of the deck (it is dealt next).
+     */
+    void returnToHead(int card) {
+        if (head == 0) { // move the cards to the end of the array, to make room at the head
+            int shift = cards.length - tail;
+            System.arraycopy(cards, head, cards, shift, size());
+            head += shift;
+            tail += shift;
+        }
+        cards[--head] = card;
+    }
+
+    /**
+     * Puts a card back at the tail of the deck (it is dealt last).
+     */
+    void returnToTail(int card) {
+        if (tail == cards.length) { // move the cards to the start of the array, to make room at the tail
+            System.arraycopy(cards, head, cards, 0, size());
+            tail -= head;
+            head = 0;
+        }
+        cards[tail++] = card;
+    }
+
+    /**
+     * Shuffles the deck, exactly as Collections::shuffle shuffles a list of the same cards with the same random.
+     */
+    void shuffle(Random random) {
+        for (int i = size(); i > 1; i--) {
+            int j = head + random.nextInt(i);
+            int card = cards[head + i - 1];
+            cards[head + i - 1] = cards[j];
+            cards[j] = card;
+        }
+    }
+
+    /**
+     * Replaces the cards of the deck.
+     *
+     * @param cards - the cards, from head to tail (at most as many as the deck was created with).
+     */
+    void set(int[] cards) {
+        System.arraycopy(cards, 0, this.cards, 0, cards.length);
+        head = 0;
+        tail = cards.length;
+    }
+
+    /**
+     * @return - a copy of the cards, from head to tail.
+     */
+    int[] toArray() {
+        int[] copy = new int[size()];
+        System.arraycopy(cards, head, copy, 0, copy.length);
+        return copy;
+    }
+
+    /**
+     * @return - a read only view of the cards, from head to tail (for Util::findSets).
+     */
+    List<Integer> asList() {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return cards[head + index];
+            }
+
+            @Override
+            public int size() {
+                return Deck.this.size();
+            }
+        };
+    }
+}
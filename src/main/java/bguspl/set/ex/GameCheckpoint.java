@@ -0,0 +1,176 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The complete state of a game in progress, from which the game can be resumed (e.g. after a crash): the cards on the
+ * table, the deck in dealing order, the tokens, the scores, the time left on the countdown and the freezes of the
+ * players. The dealer takes a checkpoint every config.checkpointMillis between two deals (copying the state, which
+ * does not pause the players), and it is written to config.checkpointFile in the background.
+ * The file is replaced atomically, so a crash while writing it leaves the previous checkpoint.
+ */
+public class GameCheckpoint {
+
+    /**
+     * Identifies checkpoint files ("SETC").
+     */
+    private static final int MAGIC = 0x53455443;
+
+    private static final int VERSION = 1;
+
+    /**
+     * The seed of the game session, and the number of games the session played before this game.
+     */
+    public final long seed;
+    public final int game;
+
+    /**
+     * The card in every slot (-1 if none).
+     */
+    final int[] slotToCard;
+
+    /**
+     * The cards of the deck, in the order they are dealt.
+     */
+    final int[] deck;
+
+    /**
+     * The slots of the tokens of every player.
+     */
+    final int[][] tokens;
+
+    final int[] scores;
+
+    /**
+     * The milliseconds left on the countdown.
+     */
+    final long timeLeft;
+
+    /**
+     * The milliseconds every player stays frozen for.
+     */
+    final long[] freezes;
+
+    GameCheckpoint(long seed, int game, int[] slotToCard, int[] deck, int[][] tokens, int[] scores, long timeLeft,
+                   long[] freezes) {
+        this.seed = seed;
+        this.game = game;
+        this.slotToCard = slotToCard;
+        this.deck = deck;
+        this.tokens = tokens;
+        this.scores = scores;
+        this.timeLeft = timeLeft;
+        this.freezes = freezes;
+    }
+
+    /**
+     * @return - true iff the checkpoint is a state of a game of the configuration: the table size and the players
+     * match, every card of the deck appears at most once (on the table or in the deck), every token is on a card, no
+     * player has more tokens than a set, and no score, time left or freeze is negative.
+     */
+    public boolean fits(Config config) {
+        if (slotToCard.length != config.tableSize || scores.length != config.players || tokens.length != config.players
+                || freezes.length != config.players) return false;
+        boolean[] seen = new boolean[config.deckSize];
+        for (int card : slotToCard)
+            if (card != -1 && !see(seen, card)) return false;
+        for (int card : deck)
+            if (!see(seen, card)) return false;
+        for (int[] slots : tokens) {
+            if (slots.length > config.featureSize) return false;
+            boolean[] tokenSeen = new boolean[config.tableSize];
+            for (int slot : slots)
+                if (!see(tokenSeen, slot) || slotToCard[slot] == -1) return false;
+        }
+        for (int player = 0; player < scores.length; player++)
+            if (scores[player] < 0 || freezes[player] < 0) return false;
+        return timeLeft >= 0;
+    }
+
+    /**
+     * Marks a value as seen.
+     *
+     * @return - true iff the value is in range and was not seen before.
+     */
+    private static boolean see(boolean[] seen, int value) {
+        if (value < 0 || value >= seen.length || seen[value]) return false;
+        seen[value] = true;
+        return true;
+    }
+
+    /**
+     * Writes the checkpoint to a file, replacing it atomically.
+     *
+     * @param path - the file to write.
+     * @throws IOException - if the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            out.writeInt(game);
+            writeInts(out, slotToCard);
+            writeInts(out, deck);
+            out.writeInt(tokens.length);
+            for (int[] slots : tokens) writeInts(out, slots);
+            writeInts(out, scores);
+            out.writeLong(timeLeft);
+            out.writeInt(freezes.length);
+            for (long freeze : freezes) out.writeLong(freeze);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a checkpoint from a file.
+     *
+     * @param path - the file to read.
+     * @return - the checkpoint.
+     * @throws IOException - if the file cannot be read or is not a checkpoint.
+     */
+    public static GameCheckpoint read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) throw new IOException(path + " is not a game checkpoint");
+            int version = in.readUnsignedByte();
+            if (version != VERSION) throw new IOException("unsupported checkpoint version " + version);
+            long seed = in.readLong();
+            int game = in.readInt();
+            int[] slotToCard = readInts(in);
+            int[] deck = readInts(in);
+            int[][] tokens = new int[in.readInt()][];
+            for (int player = 0; player < tokens.length; player++) tokens[player] = readInts(in);
+            int[] scores = readInts(in);
+            long timeLeft = in.readLong();
+            long[] freezes = new long[in.readInt()];
+            for (int player = 0; player < freezes.length; player++) freezes[player] = in.readLong();
+            if (tokens.length != scores.length || freezes.length != scores.length)
+                throw new IOException("corrupt checkpoint " + path);
+            return new GameCheckpoint(seed, game, slotToCard, deck, tokens, scores, timeLeft, freezes);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) out.writeInt(value);
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 1 << 26) throw new IOException("corrupt checkpoint");
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) values[i] = in.readInt();
+        return values;
+    }
+}
@@ -0,0 +1,289 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A compact recording of a game: its seed and the events that cannot be derived from the seed (the card deals, the
+ * key presses that reached the table and the claim verdicts), each with its time since the start of the game.
+ * Given the seed, the key presses are the only input of the game, so a recording can be replayed against the stepped
+ * engine (see bguspl.set.Replay), and the deals and claims of the replay can be compared to the recorded ones.
+ * <p>
+ * The events are encoded in memory while the game runs (one byte for the event type and variable length integers for
+ * the time delta and the payload), and are written to the file once the game is over.
+ */
+public class GameRecording {
+
+    /**
+     * The types of the recorded events.
+     */
+    public enum Type {
+        DEAL,      // a card was placed on the table: slot, card
+        KEY_PRESS, // a key press of a player reached the table: player, slot
+        CLAIM      // the dealer checked a set claimed by a player: player, 1 if legal or 0 if not
+    }
+
+    /**
+     * A recorded event.
+     */
+    public static class Event {
+
+        public final Type type;
+
+        /**
+         * The time of the event in milliseconds since the start of the game.
+         */
+        public final long time;
+
+        /**
+         * The slot (DEAL) or the player (KEY_PRESS, CLAIM) of the event.
+         */
+        public final int first;
+
+        /**
+         * The card (DEAL), the slot (KEY_PRESS) or the verdict (CLAIM) of the event.
+         */
+        public final int second;
+
+        Event(Type type, long time, int first, int second) {
+            this.type = type;
+            this.time = time;
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + first + ", " + second + ") at " + time + "ms";
+        }
+    }
+
+    /**
+     * Identifies recording files ("SETR").
+     */
+    private static final int MAGIC = 0x53455452;
+
+    private static final int VERSION = 1;
+
+    /**
+     * The seed the game was played from.
+     */
+    public final long seed;
+
+    /**
+     * The configuration values a game depends on (a recording is replayed with the same values only).
+     */
+    private final long[] fingerprint;
+
+    /**
+     * The clock the times are read from (null for recordings read from a file).
+     */
+    private final Env env;
+
+    /**
+     * The start time of the game according to env.clock.
+     */
+    private final long start;
+
+    /**
+     * The time of the last event (the times are encoded as deltas from it).
+     */
+    private long lastTime;
+
+    /**
+     * The encoded events.
+     */
+    private final ByteArrayOutputStream bytes;
+
+    /**
+     * Starts a new recording of a game.
+     *
+     * @param env  - the environment of the game.
+     * @param seed - the seed of the game.
+     */
+    public GameRecording(Env env, long seed) {
+        this.env = env;
+        this.seed = seed;
+        this.fingerprint = fingerprint(env.config);
+        this.start = env.clock.currentTimeMillis();
+        this.bytes = new ByteArrayOutputStream(4096);
+    }
+
+    private GameRecording(long seed, long[] fingerprint, ByteArrayOutputStream bytes, long duration) {
+        this.env = null;
+        this.seed = seed;
+        this.fingerprint = fingerprint;
+        this.start = 0;
+        this.bytes = bytes;
+        this.lastTime = duration;
+    }
+
+    /**
+     * @return - the configuration values that change the course of a game given its seed and its key presses.
+     */
+    private static long[] fingerprint(Config config) {
+        return new long[]{config.featureSize, config.featureCount, config.tableSize, config.players,
+                config.turnTimeoutMillis, config.turnTimeoutWarningMillis, config.pointFreezeMillis,
+                config.penaltyFreezeMillis, config.tableDelayMillis};
+    }
+
+    /**
+     * @param config - a configuration.
+     * @return - true iff the recording can be replayed with this configuration.
+     */
+    public boolean matches(Config config) {
+        return Arrays.equals(fingerprint, fingerprint(config));
+    }
+
+    public void deal(int card, int slot) {
+        record(Type.DEAL, slot, card);
+    }
+
+    public void keyPress(int player, int slot) {
+        record(Type.KEY_PRESS, player, slot);
+    }
+
+    public void claim(int player, boolean legal) {
+        record(Type.CLAIM, player, legal ? 1 : 0);
+    }
+
+    private synchronized void record(Type type, int first, int second) {
+        if (env == null) throw new IllegalStateException("cannot record into a recording read from a file");
+        long time = Math.max(env.clock.currentTimeMillis() - start, lastTime); // the system clock may go back
+        bytes.write(type.ordinal());
+        writeVarLong(bytes, time - lastTime);
+        writeVarLong(bytes, first);
+        writeVarLong(bytes, second);
+        lastTime = time;
+    }
+
+    /**
+     * @return - all the recorded events, in the order they were recorded.
+     */
+    public synchronized List<Event> events() {
+        List<Event> events = new ArrayList<>();
+        Type[] types = Type.values();
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+        long time = 0;
+        int type;
+        while ((type = in.read()) >= 0) {
+            time += readVarLong(in);
+            events.add(new Event(types[type], time, (int) readVarLong(in), (int) readVarLong(in)));
+        }
+        return events;
+    }
+
+    /**
+     * @return - the time of the last recorded event in milliseconds since the start of the game.
+     */
+    public synchronized long duration() {
+        return lastTime;
+    }
+
+    /**
+     * @param type - an event type.
+     * @return - the recorded events of the given type.
+     */
+    public List<Event> events(Type type) {
+        return events().stream().filter(event -> event.type == type).collect(Collectors.toList());
+    }
+
+    /**
+     * Writes the recording to a file.
+     *
+     * @param path - the file to write.
+     * @throws IOException - if the file cannot be written.
+     */
+    public synchronized void write(Path path) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            out.writeByte(fingerprint.length);
+            for (long value : fingerprint) out.writeLong(value);
+            bytes.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads a recording from a file.
+     *
+     * @param path - the file to read.
+     * @return - the recording.
+     * @throws IOException - if the file cannot be read or is not a game recording.
+     */
+    public static GameRecording read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) throw new IOException(path + " is not a game recording");
+            int version = in.readUnsignedByte();
+            if (version != VERSION) throw new IOException("unsupported recording version " + version);
+            long seed = in.readLong();
+            long[] fingerprint = new long[in.readUnsignedByte()];
+            for (int i = 0; i < fingerprint.length; i++) fingerprint[i] = in.readLong();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) > 0; ) bytes.write(buffer, 0, read);
+            return new GameRecording(seed, fingerprint, bytes, validate(bytes.toByteArray()));
+        }
+    }
+
+    /**
+     * Checks that the encoded events can be decoded.
+     *
+     * @return - the time of the last event.
+     */
+    private static long validate(byte[] events) throws IOException {
+        long time = 0;
+        int position = 0;
+        while (position < events.length) {
+            if ((events[position++] & 0xFF) >= Type.values().length) throw new IOException("unknown event type");
+            for (int field = 0; field < 3; field++) {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    if (position == events.length || shift > 63) throw new EOFException("truncated recording");
+                    b = events[position++];
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                if (field == 0) time += value;
+            }
+        }
+        return time;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteArrayInputStream in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+}
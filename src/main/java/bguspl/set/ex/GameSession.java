@@ -0,0 +1,190 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.ThreadLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * This class runs successive games (rematches) in the same JVM.
+ * The environment, the user interface (with its loaded images) and the pooled threads of the environment's executor
+ * are reused, while every game gets a fresh table, deck and players (so the scores start from 0).
+ * Game n of the session (counting from 0) is seeded with the seed of the session plus n, so the first game of a
+ * session seeded with the logged seed of any game deals the same cards. If config.recordDirectory is set, every game
+ * is also recorded (see GameRecording) to a file named by its seed. If config.checkpointFile is set, the game in
+ * progress is checkpointed to it (see GameCheckpoint), and a session created from a checkpoint resumes that game.
+ */
+public class GameSession implements Runnable {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The players array shared with the user interface (refilled with new players for every game).
+     */
+    private final Player[] players;
+
+    /**
+     * The dealer of the game currently running (null before the first game).
+     */
+    private volatile Dealer dealer;
+
+    /**
+     * The game currently running on the stepped engine (null if none).
+     */
+    private volatile SteppedGame steppedGame;
+
+    /**
+     * The seed of the first game of the session.
+     */
+    private final long seed;
+
+    /**
+     * True iff the session should be terminated.
+     */
+    private volatile boolean terminate;
+
+    /**
+     * The number of games that were completed in this session.
+     */
+    private volatile int gamesPlayed;
+
+    /**
+     * The checkpoint the next game resumes from (null to start it from scratch).
+     */
+    private GameCheckpoint checkpoint;
+
+    public GameSession(Env env, Player[] players) {
+        this(env, players, env.config.seed != 0 ? env.config.seed : new Random().nextLong());
+    }
+
+    /**
+     * @param env     - the environment object.
+     * @param players - the players array shared with the user interface.
+     * @param seed    - the seed of the first game of the session.
+     */
+    public GameSession(Env env, Player[] players, long seed) {
+        this.env = env;
+        this.players = players;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a session resuming a game from its checkpoint (and playing the rest of the games of its session).
+     *
+     * @param checkpoint - the checkpoint of the game.
+     */
+    public GameSession(Env env, Player[] players, GameCheckpoint checkpoint) {
+        this(env, players, checkpoint.seed);
+        this.gamesPlayed = checkpoint.game;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Plays config.games games in a row (or until terminated if config.games is 0).
+     */
+    @Override
+    public void run() {
+        while (!terminate && (env.config.games <= 0 || gamesPlayed < env.config.games)) {
+            if (gamesPlayed > 0) env.ui.reset();
+            playGame();
+            gamesPlayed++;
+        }
+        if (!terminate && !env.config.checkpointFile.isEmpty()) try { // nothing left to resume
+            Dealer last = dealer;
+            if (last != null) last.awaitCheckpoint(); // so it does not write the file again after it is deleted
+            Files.deleteIfExists(Paths.get(env.config.checkpointFile));
+        } catch (IOException e) {
+            env.logger.warning("cannot delete the checkpoint " + env.config.checkpointFile + ": " + e);
+        }
+    }
+
+    /**
+     * Creates the entities of a single game (seeded with the seed of the session plus the number of games played),
+     * plays it and saves its recording.
+     */
+    private void playGame() {
+        long gameSeed = seed + gamesPlayed;
+        env.logger.info("game " + (gamesPlayed + 1) + " seed: " + gameSeed);
+        GameRecording recording = env.config.recordDirectory.isEmpty() ? null : new GameRecording(env, gameSeed);
+        if (env.config.steppedEngine) playSteppedGame(gameSeed, recording);
+        else playThreadedGame(gameSeed, recording);
+        if (recording != null) saveRecording(recording);
+    }
+
+    /**
+     * Runs the dealer of a single game on the thread pool and waits for it to finish.
+     */
+    private void playThreadedGame(long gameSeed, GameRecording recording) {
+        Random random = new Random(gameSeed); // drawn in the same order as by the stepped engine
+        Table table = new Table(env);
+        table.recording = recording;
+        Dealer newDealer = new Dealer(env, table, players, random);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, newDealer, table, i, i < env.config.humanPlayers,
+                    new Random(random.nextLong()));
+        if (checkpoint != null) {
+            newDealer.restore(checkpoint);
+            checkpoint = null;
+        }
+        if (!env.config.checkpointFile.isEmpty())
+            newDealer.checkpointTo(Paths.get(env.config.checkpointFile), seed, gamesPlayed);
+
+        dealer = newDealer;
+        if (terminate) return; // terminated while the game was being created
+
+        Future<?> dealerTask = ThreadLogger.submitWithLog(env.executor, env.clock.participant(newDealer), "dealer",
+                env.logger);
+        try {
+            dealerTask.get();
+        } catch (InterruptedException e) {
+            terminate();
+        } catch (ExecutionException e) {
+            env.logger.severe("game " + (gamesPlayed + 1) + " failed: " + e.getCause());
+            terminate();
+        }
+    }
+
+    /**
+     * Runs a single game on the stepped engine, on the calling thread.
+     */
+    private void playSteppedGame(long gameSeed, GameRecording recording) {
+        SteppedGame game = new SteppedGame(env, gameSeed, recording);
+        steppedGame = game;
+        if (terminate) return; // terminated while the game was being created
+        game.run();
+    }
+
+    private void saveRecording(GameRecording recording) {
+        Path path = Paths.get(env.config.recordDirectory, "game-" + recording.seed + ".rec");
+        try {
+            recording.write(path);
+            env.logger.info("game recorded to " + path);
+        } catch (IOException e) {
+            env.logger.severe("cannot write the recording " + path + ": " + e);
+        }
+    }
+
+    /**
+     * Called when the session should be terminated (stops the current game and does not start another one).
+     */
+    public void terminate() {
+        terminate = true;
+        Dealer current = dealer;
+        if (current != null) current.terminate();
+        SteppedGame currentStepped = steppedGame;
+        if (currentStepped != null) currentStepped.terminate();
+    }
+
+    public int gamesPlayed() {
+        return gamesPlayed;
+    }
+}
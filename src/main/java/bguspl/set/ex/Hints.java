@@ -0,0 +1,94 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Computes and prints the hints of a table (the legal sets on it) in the background, so the dealer never waits for
+ * them: a request only schedules the computation on the pool of the game, for the current version of the table.
+ * The hints of a version are computed and printed once (a request for the version already printed or being computed
+ * does nothing), a computation superseded by a newer version of the table is cancelled (or discarded when it ends),
+ * and the hints of a version are printed at once, through a buffered writer flushed once per version.
+ */
+class Hints {
+
+    private final Env env;
+    private final Table table;
+
+    /**
+     * The buffered sink the hints are printed to (used by one computation at a time, guarded by itself).
+     */
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)), false);
+
+    /**
+     * The version of the table whose hints were requested last, and the computation of them (guarded by this).
+     */
+    private long requested = -1;
+    private Future<?> pending;
+
+    /**
+     * The version of the table whose hints were printed last (guarded by this).
+     */
+    private long printed = -1;
+
+    Hints(Env env, Table table) {
+        this.env = env;
+        this.table = table;
+    }
+
+    /**
+     * Schedules the computation of the hints of the current version of the table (unless it is already scheduled or
+     * done), cancelling the computation of the hints of an earlier version.
+     */
+    synchronized void request() {
+        long version = table.version();
+        if (version == requested || version == printed) return;
+        if (pending != null) pending.cancel(false);
+        requested = version;
+        pending = env.executor.submit(() -> { // not logged as a thread, it runs after every refill
+            try {
+                compute(version);
+            } catch (RuntimeException e) {
+                env.logger.warning("computing the hints failed: " + e);
+            }
+        });
+    }
+
+    private void compute(long version) {
+        int[] slotToCard = table.snapshot(version);
+        if (slotToCard == null) return; // the table changed, a newer request follows
+
+        List<Integer> cards = new ArrayList<>();
+        int[] cardToSlot = new int[env.config.deckSize];
+        for (int slot = 0; slot < slotToCard.length; slot++) {
+            if (slotToCard[slot] == -1) continue;
+            cards.add(slotToCard[slot]);
+            cardToSlot[slotToCard[slot]] = slot;
+        }
+        if (cards.isEmpty()) return;
+
+        StringBuilder text = new StringBuilder();
+        for (int[] set : env.util.findSets(cards, Integer.MAX_VALUE)) {
+            if (table.version() != version) return; // superseded
+            int[] slots = Arrays.stream(set).map(card -> cardToSlot[card]).sorted().toArray();
+            text.append("Hint: Set found: slots: ").append(Arrays.toString(slots)).append(" features: ")
+                    .append(Arrays.deepToString(env.util.cardsToFeatures(set))).append(System.lineSeparator());
+        }
+
+        synchronized (this) {
+            if (version != requested) return; // superseded
+            printed = version;
+        }
+        synchronized (out) {
+            out.print(text);
+            out.flush();
+        }
+    }
+}
@@ -2,17 +2,48 @@ package bguspl.set.ex;
 
 import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import bguspl.set.Env;
+import bguspl.set.LatencyTracker;
+import bguspl.set.ThreadLogger;
 
 /**
  * This class manages the players' threads and data
  *
  * @inv id >= 0
- * @inv score >= 0
+ * @inv score() >= 0
  */
 public class Player implements Runnable {
 
+    /**
+     * A key press waiting in the queue of the player.
+     */
+    public static class KeyPress {
+
+        /**
+         * The slot corresponding to the key pressed.
+         */
+        public final int slot;
+
+        /**
+         * The epoch of the table when the key was pressed, see Table::epoch.
+         */
+        public final int epoch;
+
+        /**
+         * The latency trace stamp of the key press, see LatencyTracker::stamp.
+         */
+        public final long stamp;
+
+        KeyPress(int slot, int epoch, long stamp) {
+            this.slot = slot;
+            this.epoch = epoch;
+            this.stamp = stamp;
+        }
+    }
+
     /**
      * The game environment object.
      */
@@ -29,14 +60,14 @@ public class Player implements Runnable {
     public final int id;
 
     /**
-     * The thread representing the current player.
+     * The thread representing the current player (null when the player is not running).
      */
     private Thread playerThread;
 
     /**
-     * The thread of the AI (computer) player (an additional thread used to generate key presses).
+     * The task of the AI (computer) player (an additional pooled thread used to generate key presses).
      */
-    private Thread aiThread;
+    private Future<?> aiTask;
 
     /**
      * True iff the player is human (not a computer player).
@@ -48,11 +79,6 @@ public class Player implements Runnable {
      */
     private volatile boolean terminate;
 
-    /**
-     * The current score of the player.
-     */
-    private int score;
-
     /**
      * The dealer.
      */
@@ -61,18 +87,38 @@ public class Player implements Runnable {
     /**
      * The insertaion of the keyboard
      */
-    private ArrayBlockingQueue<Integer> inputCard;
+    private ArrayBlockingQueue<KeyPress> inputCard;
+
+    /**
+     * The monitor the player thread waits on for key presses, and the computer player waits on until it can press.
+     */
+    private final Object inputLock = new Object();
 
     /**
      * checks if a player can play
      */
     private volatile boolean canPlay = true;
 
+    /**
+     * The clock time the current freeze of the player ends at (for checkpoints).
+     */
+    private volatile long frozenUntil;
+
+    /**
+     * The milliseconds the player is frozen for when it starts (a resumed game).
+     */
+    private long restoredFreeze;
+
     /*
      * max num of keys can set before processing it
      */
     private final int maxNumOfPreprocessKeys;
 
+    /**
+     * The way the computer player picks its key presses (null for a human player).
+     */
+    private final Strategy strategy;
+
     /**
      * The class constructor.
      *
@@ -83,13 +129,23 @@ public class Player implements Runnable {
      * @param human  - true iff the player is a human player (i.e. input is provided manually, via the keyboard).
      */
     public Player(Env env, Dealer dealer, Table table, int id, boolean human) {
+        this(env, dealer, table, id, human, new Random());
+    }
+
+    /**
+     * @param random - the source of randomness of the computer player (seeded to reproduce its key presses).
+     *               The computer player plays the strategy configured for its id (see Config::computerStrategy).
+     */
+    public Player(Env env, Dealer dealer, Table table, int id, boolean human, Random random) {
         this.env = env;
+        this.strategy = human ? null : Strategy.of(env.config.computerStrategy(id), env, table, id, random);
         this.table = table;
         this.id = id;
         this.human = human;
         this.dealer = dealer;
         this.maxNumOfPreprocessKeys = env.config.featureSize;
-        this.inputCard = new ArrayBlockingQueue<Integer>(maxNumOfPreprocessKeys);
+        this.inputCard = new ArrayBlockingQueue<KeyPress>(maxNumOfPreprocessKeys);
+        env.metrics.watchPlayer(id, inputCard::size, this::freezeLeft);
     }
 
     /**
@@ -97,33 +153,78 @@ public class Player implements Runnable {
      */
     @Override
     public void run() {
-        playerThread = Thread.currentThread();
-        env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        synchronized (this) {
+            playerThread = Thread.currentThread();
+        }
         if (!human) createArtificialIntelligence();
+        if (restoredFreeze > 0) freeze(restoredFreeze);
 
         while (!terminate) {
-            if(dealer.getCanPlay() && canPlay){
-                try {
-                 //   checkingSet();
-                    int slot = inputCard.take();
-                    if (!table.removeToken(id, slot) && table.playerTokens.get(id).size() < maxNumOfPreprocessKeys) { // we only go in if it was picked a diffrenet card, if it is a card that was already picked we "unpick" it
-                        //checking if we can take one more card 
-                            table.placeToken(id, slot);
-                            checkingSet();
-                    }
-                } catch (InterruptedException e) {
-                    env.logger.warning("error adding a card " + e.getMessage());
+            try {
+                KeyPress keyPress = takeKeyPress();
+                int slot = keyPress.slot;
+                long stamp = keyPress.stamp;
+                int epoch = keyPress.epoch;
+                env.latency.record(LatencyTracker.Stage.INPUT_QUEUE, stamp);
+                if (epoch != table.epoch()) continue; // the key was pressed before the dealer redealt the table
+                if (table.recording != null) table.recording.keyPress(id, slot);
+                if (!table.removeToken(id, slot) && table.playerTokens.get(id).size() < maxNumOfPreprocessKeys) { // we only go in if it was picked a diffrenet card, if it is a card that was already picked we "unpick" it
+                    //checking if we can take one more card 
+                        table.placeToken(id, slot, epoch);
+                        env.latency.record(LatencyTracker.Stage.TOKEN_VISIBLE, stamp);
+                        checkingSet(stamp, epoch);
                 }
+            } catch (InterruptedException e) {
+                if (!terminate) env.logger.warning("error adding a card " + e.getMessage());
             }
         }
-        if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
-        env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+        if (!human) try {
+            aiTask.get();
+        } catch (InterruptedException | ExecutionException e) {
+            env.logger.warning("error joining computer player " + id + ": " + e.getMessage());
+        }
+        synchronized (this) { // the pooled thread may run another task next, so it must not be interrupted from now on
+            playerThread = null;
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Waits (through the game clock) for the next key press and takes it out of the queue.
+     *
+     * @return - the key press.
+     * @throws InterruptedException - if the player was terminated while waiting.
+     */
+    private KeyPress takeKeyPress() throws InterruptedException {
+        synchronized (inputLock) {
+            KeyPress keyPress;
+            while ((keyPress = inputCard.poll()) == null) {
+                if (terminate) throw new InterruptedException("player " + id + " terminated");
+                env.clock.await(inputLock, 0);
+            }
+            env.clock.signalAll(inputLock); // there is room in the queue for the computer player again
+            return keyPress;
+        }
     }
 
-    private void checkingSet(){
+    /**
+     * Wakes up the player and computer player threads to check whether they can play (called when the dealer lets the
+     * players play again).
+     */
+    public void wakeUp() {
+        synchronized (inputLock) {
+            env.clock.signalAll(inputLock);
+        }
+    }
+
+    private void checkingSet(long stamp, int epoch){
         if (table.playerTokens.get(id).size() == maxNumOfPreprocessKeys && !terminate) {// checks this player found a set and we did not terminate
             // asking delear to check the cards
-            Boolean answer =  dealer.checkCardsBasic(id); 
+            Boolean answer =  dealer.checkCardsBasic(id, epoch); 
+            env.latency.record(LatencyTracker.Stage.CLAIM_VERDICT, stamp);
+            if (answer != null && table.recording != null) table.recording.claim(id, answer);
+            if (answer != null) env.journal.claim(table.journalGame, id, answer);
+            if (answer != null) env.metrics.claimJudged(id, answer);
             //checking the answer and doing as it is (pleanty or point)
             if (answer != null) {
                 //if the set is leagel
@@ -139,29 +240,39 @@ public class Player implements Runnable {
 
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * key presses. If the queue of key presses is full (or the player cannot play), the thread waits until it is not.
      */
     private void createArtificialIntelligence() {
         // note: this is a very, very smart AI (!)
-        Random random = new Random();
-        aiThread = new Thread(() -> {
-            env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        aiTask = ThreadLogger.submitWithLog(env.executor, env.clock.participant(() -> {
             while (!terminate) {
-                if(dealer.getCanPlay() && inputCard.size() != maxNumOfPreprocessKeys && canPlay){
-                    int keyPress = random.nextInt(env.config.tableSize);
-                    keyPressed(keyPress);
+                try {
+                    synchronized (inputLock) {
+                        while (!terminate && !(dealer.getCanPlay() && canPlay && inputCard.remainingCapacity() > 0))
+                            env.clock.await(inputLock, 0);
+                    }
+                    if (terminate) break;
+                    int keyPress = strategy.nextKeyPress(inputCard.size());
+                    if (keyPress >= 0) keyPressed(keyPress, env.latency.stamp());
+                    env.clock.sleep(keyPress >= 0 ? env.config.computerKeyPressMillis
+                            : Math.max(env.config.computerKeyPressMillis, 1)); // nothing to press yet, look again later
+                } catch (InterruptedException e) {
+                    env.logger.warning("computer player " + id + " interrupted: " + e.getMessage());
                 }
             }
-            env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id);
-        aiThread.start();
+        }), "computer-" + id, env.logger);
     }
 
     /**
      * Called when the game should be terminated.
+     * Interrupts the player thread in case it is waiting for a key press.
      */
     public void terminate() {
         terminate = true;
+        synchronized (this) {
+            if (playerThread != null) playerThread.interrupt();
+        }
+        wakeUp();
     }
 
     /**
@@ -170,8 +281,21 @@ public class Player implements Runnable {
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
+        keyPressed(slot, env.latency.stamp());
+    }
+
+    /**
+     * This method is called when a key is pressed.
+     *
+     * @param slot  - the slot corresponding to the key pressed.
+     * @param stamp - the monotonic time (System::nanoTime) of the key press, for latency tracing.
+     */
+    public void keyPressed(int slot, long stamp) {
         if(inputCard.size() != maxNumOfPreprocessKeys && canPlay){
-            inputCard.add(slot);
+            KeyPress keyPress = new KeyPress(slot, table.epoch(), stamp);
+            synchronized (inputLock) {
+                if (inputCard.offer(keyPress)) env.clock.signalAll(inputLock);
+            }
         }
     }
 
@@ -182,8 +306,7 @@ public class Player implements Runnable {
      * @post - the player's score is updated in the ui.
      */
     public void point() {
-        score = score+1;
-        env.ui.setScore(id, score);
+        env.leaderboard.point(id); // also updates the score in the ui
         long timeOfPointFreeze = env.config.pointFreezeMillis;
         freeze(timeOfPointFreeze);
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
@@ -199,36 +322,53 @@ public class Player implements Runnable {
 
     private void threadSleep(long timeOfPenalty){
         try {
-            Thread.currentThread();
-            Thread.sleep(timeOfPenalty);
+            env.clock.sleep(timeOfPenalty);
         } catch (Exception e) {
-            env.logger.warning("error using thread sleep " + e.getMessage());
+            if (!terminate) env.logger.warning("error using thread sleep " + e.getMessage());
         }
     }
 
     private void freeze(long timeOfFreeze){
         canPlay = false;
+        frozenUntil = env.clock.currentTimeMillis() + timeOfFreeze;
+        env.metrics.frozen(id, timeOfFreeze);
+        env.journal.freeze(table.journalGame, id, timeOfFreeze);
         env.ui.setFreeze(id, timeOfFreeze);
         //if there is more then 1 sec
-        while (timeOfFreeze > 1000) {
+        while (timeOfFreeze > 1000 && !terminate) {
             //sleep for 1 sec and update the board
             threadSleep(1000);
             timeOfFreeze = timeOfFreeze - 1000;
             env.ui.setFreeze(id, timeOfFreeze);
         }
         //if there is still more time to wait
-        if (timeOfFreeze > 0) {
+        if (timeOfFreeze > 0 && !terminate) {
             threadSleep(timeOfFreeze);
         }
         env.ui.setFreeze(id, 0);
         canPlay = true;
+        wakeUp();
+    }
+
+    /**
+     * @return - the milliseconds left until the player is not frozen (0 if it is not frozen).
+     */
+    long freezeLeft() {
+        return canPlay ? 0 : Math.max(0, frozenUntil - env.clock.currentTimeMillis());
+    }
+
+    /**
+     * Freezes the player for the given time once it starts (called before it starts, to resume a game).
+     */
+    void restoreFreeze(long millies) {
+        restoredFreeze = millies;
     }
 
     public int score() {
-        return score;
+        return env.leaderboard.score(id);
     }
 
-    public ArrayBlockingQueue<Integer> getInputCard(){
+    public ArrayBlockingQueue<KeyPress> getInputCard(){
         return inputCard;
     }
 }
@@ -0,0 +1,58 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A computer player strategy that looks for a set on the table and presses its slots (after taking back its tokens
+ * that are not on the set). The plan is made from a snapshot of the table once the presses of the previous plan were
+ * handled, so it never takes back a token it is about to place.
+ */
+class SetFinderStrategy implements Strategy {
+
+    private final Env env;
+    private final Table table;
+    private final int player;
+
+    /**
+     * The slots still to press.
+     */
+    private final Deque<Integer> plan = new ArrayDeque<>();
+
+    SetFinderStrategy(Env env, Table table, int player) {
+        this.env = env;
+        this.table = table;
+        this.player = player;
+    }
+
+    @Override
+    public int nextKeyPress(int pending) {
+        if (plan.isEmpty() && pending == 0) plan();
+        Integer slot = plan.poll();
+        return slot != null ? slot : -1;
+    }
+
+    private void plan() {
+        long version = table.version();
+        int[] slotToCard = table.snapshot(version);
+        if (slotToCard == null) return; // the table is changing, try again on the next press
+        List<Integer> cards = new ArrayList<>();
+        for (int card : slotToCard)
+            if (card != -1) cards.add(card);
+        List<int[]> sets = env.util.findSets(cards, 1);
+        if (sets.isEmpty()) return;
+
+        boolean[] wanted = new boolean[slotToCard.length];
+        for (int card : sets.get(0))
+            for (int slot = 0; slot < slotToCard.length; slot++)
+                if (slotToCard[slot] == card) wanted[slot] = true;
+        for (int slot = 0; slot < wanted.length; slot++)
+            if (!wanted[slot] && table.hasToken(player, slot)) plan.add(slot);
+        for (int slot = 0; slot < wanted.length; slot++)
+            if (wanted[slot] && !table.hasToken(player, slot)) plan.add(slot);
+    }
+}
@@ -0,0 +1,231 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The dealer of the stepped engine (see SteppedGame): the same game rules as the Dealer class, as a state machine.
+ */
+class SteppedDealer extends SteppedGame.Machine {
+
+    /**
+     * The states of the dealer.
+     */
+    private enum State {
+        DEAL,     // deal the first cards and start the countdown
+        PLAY,     // update the countdown, reshuffle on timeout and refill the empty slots
+        ANNOUNCE, // there are no more sets, announce the winners
+        DONE      // the end game pause is over
+    }
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * Game entities.
+     */
+    private final SteppedGame game;
+    private final Table table;
+    private SteppedPlayer[] players;
+
+    /**
+     * The source of randomness of the dealer (the deck and empty slots shuffles).
+     */
+    private final Random random;
+
+    /**
+     * The card ids that are left in the dealer's deck.
+     */
+    private final Deck deck;
+
+    /**
+     * The time between countdown display updates while the warning is displayed (the display shows milliseconds).
+     */
+    private static final long WARNING_TICK_MILLIS = 5;
+
+    /**
+     * The current state of the dealer.
+     */
+    private State state = State.DEAL;
+
+    /**
+     * The virtual time the countdown started at.
+     */
+    private long timeStarted;
+
+    /**
+     * The number of cards dealt so far.
+     */
+    private int dealt;
+
+    SteppedDealer(Env env, SteppedGame game, Table table, Random random) {
+        this.env = env;
+        this.game = game;
+        this.table = table;
+        this.random = random;
+        deck = new Deck(env.config.deckSize);
+        deck.shuffle(random);
+    }
+
+    /**
+     * Called by the game once the players are created, so the dealer can announce the winners.
+     */
+    void setPlayers(SteppedPlayer[] players) {
+        this.players = players;
+    }
+
+    @Override
+    long step() {
+        switch (state) {
+            case DEAL:
+                placeCardsOnTable();
+                resetCountdown();
+                state = State.PLAY;
+                return nextDisplayChange();
+            case PLAY:
+                updateCountdown();
+                if (state != State.PLAY) return env.clock.currentTimeMillis();
+                placeCardsOnTable();
+                return nextDisplayChange();
+            case ANNOUNCE:
+                env.stats.gameFinished();
+                announceWinners();
+                state = State.DONE;
+                return env.clock.currentTimeMillis() + env.config.endGamePauseMillies;
+            default:
+                return FINISHED;
+        }
+    }
+
+    /**
+     * @return - true iff there are no more sets (the game is over).
+     */
+    boolean isFinished() {
+        return state == State.ANNOUNCE || state == State.DONE;
+    }
+
+    /**
+     * @return - the number of cards dealt so far.
+     */
+    int dealt() {
+        return dealt;
+    }
+
+    /**
+     * Validates the claim of a player whose tokens are on config.featureSize cards.
+     * If the claim is legal the cards are removed (with the tokens on them), the countdown is reset and the dealer is
+     * stepped right away to refill the empty slots.
+     *
+     * @param playerId - the id of the player claiming a set.
+     * @return - true iff the set is legal, false iff it is not, null if the player has no claim to check.
+     */
+    Boolean checkCards(int playerId) {
+        List<Integer> tokens = table.playerTokens.get(playerId);
+        if (isFinished() || tokens.size() != env.config.featureSize) return null;
+        env.stats.claimSubmitted();
+
+        int[] slots = tokens.stream().mapToInt(Integer::intValue).toArray();
+        int[] cards = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            cards[i] = table.getCard(slots[i]);
+            if (cards[i] == -1) return null;
+        }
+        if (!env.util.testSet(cards)) return false;
+
+        env.stats.setCollected();
+        for (int slot : slots)
+            table.removeCard(slot);
+        resetCountdown();
+        game.wakeDealer();
+        return true;
+    }
+
+    /**
+     * Places cards from the deck in the empty slots (in random order).
+     */
+    private void placeCardsOnTable() {
+        List<Integer> emptySlots = table.getEmptySlots();
+        Collections.shuffle(emptySlots, random);
+        for (int slot : emptySlots)
+            if (!deck.isEmpty()) {
+                table.placeCard(deck.deal(), slot);
+                dealt++;
+            }
+        if (env.config.hints) table.hints();
+    }
+
+    /**
+     * Returns all the cards from the table to the deck.
+     */
+    private void removeAllCardsFromTable() {
+        for (int slot = 0; slot < env.config.tableSize; slot++) {
+            int card = table.getCard(slot);
+            if (card != -1) {
+                deck.returnToTail(card);
+                table.removeCard(slot);
+            }
+        }
+    }
+
+    private void resetCountdown() {
+        timeStarted = env.clock.currentTimeMillis();
+        env.ui.setCountdown(env.config.turnTimeoutMillis, shouldSetWarn(env.config.turnTimeoutMillis));
+    }
+
+    /**
+     * Updates the countdown display, and reshuffles the deck when the turn times out (the game is over if there are no
+     * more sets after the reshuffle).
+     */
+    private void updateCountdown() {
+        long timeLeft = timeLeft();
+        if (timeLeft > 0) {
+            env.ui.setCountdown(timeLeft, shouldSetWarn(timeLeft));
+            return;
+        }
+
+        env.ui.setCountdown(0, shouldSetWarn(0));
+        removeAllCardsFromTable();
+        table.advanceEpoch();
+        deck.shuffle(random);
+        env.stats.reshuffled();
+        env.journal.reshuffle(table.journalGame, deck.size());
+        if (env.util.findSets(deck.asList(), 1).isEmpty()) {
+            env.logger.info("there are no more sets");
+            state = State.ANNOUNCE;
+            return;
+        }
+        placeCardsOnTable();
+        resetCountdown();
+    }
+
+    /**
+     * @return - the virtual time the countdown display shows a different value (or the turn times out) at.
+     */
+    private long nextDisplayChange() {
+        long timeLeft = timeLeft();
+        long untilChange;
+        if (timeLeft <= env.config.turnTimeoutWarningMillis) untilChange = WARNING_TICK_MILLIS;
+        else untilChange = Math.min(timeLeft % 1000 + 1, timeLeft - env.config.turnTimeoutWarningMillis);
+        return env.clock.currentTimeMillis() + Math.max(1, Math.min(timeLeft, untilChange));
+    }
+
+    private long timeLeft() {
+        return env.config.turnTimeoutMillis - (env.clock.currentTimeMillis() - timeStarted);
+    }
+
+    private boolean shouldSetWarn(long timeLeft) {
+        return timeLeft < env.config.turnTimeoutWarningMillis;
+    }
+
+    /**
+     * Check who is/are the winner/s and displays them.
+     */
+    private void announceWinners() {
+        env.ui.announceWinner(env.leaderboard.leaders());
+    }
+}
@@ -0,0 +1,277 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.StepClock;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * This class runs a whole game on the calling thread (see config.steppedEngine).
+ * The dealer and the computer players are state machines that share the table and the game rules of the threaded
+ * engine. A cooperative scheduler steps them one at a time in virtual time: it always runs the machine with the
+ * earliest wake up time (the one scheduled first on ties), so a game played from the same seed is always the same.
+ * A stepped game can also replay a GameRecording: the dealer uses the recorded seed, and instead of the players a
+ * replay machine presses the recorded keys at the recorded times, in the recorded order.
+ */
+public class SteppedGame implements Runnable {
+
+    /**
+     * A state machine stepped by the scheduler.
+     */
+    abstract static class Machine {
+
+        /**
+         * Returned by step when the machine is done.
+         */
+        static final long FINISHED = -1;
+
+        /**
+         * Returned by step when the machine already rescheduled itself.
+         */
+        static final long DEFERRED = -2;
+
+        /**
+         * The virtual time the machine should be stepped at.
+         */
+        private long wakeTime;
+
+        /**
+         * The order in which the machine was scheduled (breaks ties between equal wake up times).
+         */
+        private long order;
+
+        /**
+         * Runs the machine until it has to wait.
+         *
+         * @return - the virtual time to step the machine again at, or FINISHED.
+         */
+        abstract long step();
+    }
+
+    /**
+     * Presses the recorded keys of a replayed game.
+     */
+    private class Replayer extends Machine {
+
+        /**
+         * The recorded key presses, in the recorded order.
+         */
+        private final List<GameRecording.Event> keyPresses;
+
+        /**
+         * The number of cards dealt before each recorded key press.
+         */
+        private final int[] dealsBefore;
+
+        /**
+         * The index of the next key press.
+         */
+        private int next;
+
+        /**
+         * The virtual time the game started at (the recorded times are relative to it).
+         */
+        private final long start = clock.currentTimeMillis();
+
+        private Replayer(GameRecording recording) {
+            keyPresses = recording.events(GameRecording.Type.KEY_PRESS);
+            dealsBefore = new int[keyPresses.size()];
+            int deals = 0, keys = 0;
+            for (GameRecording.Event event : recording.events()) {
+                if (event.type == GameRecording.Type.DEAL) deals++;
+                else if (event.type == GameRecording.Type.KEY_PRESS) dealsBefore[keys++] = deals;
+            }
+        }
+
+        /**
+         * Presses the next recorded key (one per step, so the dealer refills the table after a collected set before
+         * the next key press, as it does when it is woken up in the threaded engine). The replayer is stepped before
+         * the dealer at the same time, unless the recording shows that the dealer dealt cards first.
+         */
+        @Override
+        long step() {
+            if (next == keyPresses.size()) return FINISHED;
+            if (dealer.dealt() < dealsBefore[next] && schedule.contains(dealer)
+                    && ((Machine) dealer).wakeTime <= clock.currentTimeMillis()) {
+                schedule(this, clock.currentTimeMillis(), false); // after the dealer
+                return DEFERRED;
+            }
+            GameRecording.Event keyPress = keyPresses.get(next++);
+            players[keyPress.first].keyPressed(keyPress.second);
+            return next < keyPresses.size() ? start + keyPresses.get(next).time : FINISHED;
+        }
+    }
+
+    /**
+     * The game environment object (env.clock must be a StepClock).
+     */
+    private final Env env;
+
+    /**
+     * The virtual clock of the game.
+     */
+    private final StepClock clock;
+
+    /**
+     * Game entities.
+     */
+    private final Table table;
+    private final SteppedDealer dealer;
+    private final SteppedPlayer[] players;
+
+    /**
+     * The machines waiting to be stepped, by wake up time.
+     */
+    private final PriorityQueue<Machine> schedule = new PriorityQueue<>((a, b) -> a.wakeTime != b.wakeTime
+            ? Long.compare(a.wakeTime, b.wakeTime) : Long.compare(a.order, b.order));
+
+    /**
+     * The number of times machines were scheduled.
+     */
+    private long scheduled;
+
+    /**
+     * The number of steps run so far.
+     */
+    private long steps;
+
+    /**
+     * True iff the game should be terminated.
+     */
+    private volatile boolean terminate;
+
+    /**
+     * The machine pressing the recorded keys (null if the game is not a replay).
+     */
+    private final Replayer replayer;
+
+    /**
+     * The virtual time a replay stops at if it did not end by itself (the recorded game ended at the first turn
+     * timeout after its last event, so a replay that goes on longer than that diverged from the recording).
+     */
+    private final long replayEnd;
+
+    /**
+     * The class constructor.
+     *
+     * @param env  - the environment object (its clock must be a StepClock).
+     * @param seed - the seed all the randomness of the game is drawn from.
+     */
+    public SteppedGame(Env env, long seed) {
+        this(env, seed, null, null);
+    }
+
+    /**
+     * @param env       - the environment object (its clock must be a StepClock).
+     * @param seed      - the seed all the randomness of the game is drawn from.
+     * @param recording - the recording to record the game into (null to not record it).
+     */
+    public SteppedGame(Env env, long seed, GameRecording recording) {
+        this(env, seed, null, recording);
+    }
+
+    /**
+     * Creates a replay of a recorded game.
+     *
+     * @param env       - the environment object (its clock must be a StepClock).
+     * @param replay    - the recording to replay.
+     * @param recording - the recording to record the replay into (null to not record it).
+     */
+    public SteppedGame(Env env, GameRecording replay, GameRecording recording) {
+        this(env, replay.seed, replay, recording);
+    }
+
+    private SteppedGame(Env env, long seed, GameRecording replay, GameRecording recording) {
+        if (!(env.clock instanceof StepClock))
+            throw new IllegalArgumentException("the stepped engine runs on a StepClock, not on " + env.clock);
+        this.env = env;
+        this.clock = (StepClock) env.clock;
+        this.table = new Table(env);
+        table.recording = recording;
+        this.replayEnd = replay != null ? clock.currentTimeMillis() + replay.duration() + env.config.turnTimeoutMillis
+                + env.config.endGamePauseMillies + 1 : Long.MAX_VALUE;
+
+        Random random = new Random(seed);
+        this.dealer = new SteppedDealer(env, this, table, random);
+        this.players = new SteppedPlayer[env.config.players];
+        for (int i = 0; i < players.length; i++)
+            players[i] = new SteppedPlayer(env, dealer, table, i, new Random(random.nextLong()));
+        dealer.setPlayers(players);
+        this.replayer = replay != null ? new Replayer(replay) : null;
+    }
+
+    /**
+     * Steps the machines until the dealer finishes the game (or the game is terminated).
+     */
+    @Override
+    public void run() {
+        schedule(dealer, clock.currentTimeMillis(), false);
+        if (replayer != null) schedule(replayer, clock.currentTimeMillis(), true);
+        else for (int i = env.config.humanPlayers; i < players.length; i++) // human players have no input here
+            schedule(players[i], clock.currentTimeMillis(), false);
+
+        while (!terminate && schedule.contains(dealer) && clock.currentTimeMillis() <= replayEnd) {
+            Machine machine = schedule.poll();
+            clock.advanceTo(machine.wakeTime);
+            long next = machine.step();
+            steps++;
+            if (next >= 0 && (machine == dealer || !dealer.isFinished())) schedule(machine, next, machine == replayer);
+        }
+        schedule.clear();
+        env.logger.info("stepped game finished after " + steps + " steps at virtual time " + clock.currentTimeMillis()
+                + " with scores " + Arrays.toString(scores()));
+    }
+
+    /**
+     * Schedules a machine to be stepped at the given time (reschedules it if it was already scheduled).
+     *
+     * @param first - true to step the machine before the machines already scheduled for the same time.
+     */
+    private void schedule(Machine machine, long wakeTime, boolean first) {
+        schedule.remove(machine);
+        machine.wakeTime = Math.max(wakeTime, clock.currentTimeMillis());
+        machine.order = first ? -scheduled++ : scheduled++;
+        schedule.add(machine);
+    }
+
+    /**
+     * Steps the dealer right after the current step (called when a set was collected, so the empty slots are refilled
+     * before anybody else plays).
+     */
+    void wakeDealer() {
+        if (schedule.contains(dealer)) schedule(dealer, clock.currentTimeMillis(), true);
+    }
+
+    /**
+     * Called when the game should be terminated (the game stops after the current step).
+     */
+    public void terminate() {
+        terminate = true;
+    }
+
+    /**
+     * @return - the scores of the players.
+     */
+    public int[] scores() {
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++) scores[i] = players[i].score();
+        return scores;
+    }
+
+    /**
+     * @return - the number of steps run so far.
+     */
+    public long steps() {
+        return steps;
+    }
+
+    /**
+     * @return - true iff the game ended by itself (no more sets) rather than being terminated.
+     */
+    public boolean isGameFinished() {
+        return dealer.isFinished();
+    }
+}
@@ -0,0 +1,117 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * A computer player of the stepped engine (see SteppedGame): the same game rules as the Player class, as a state
+ * machine. Every step presses one random key, so a key press is handled as soon as it is made.
+ * When a recorded game is replayed, the player is not stepped: the game presses the recorded keys for it.
+ *
+ * @inv id >= 0
+ * @inv score() >= 0
+ */
+class SteppedPlayer extends SteppedGame.Machine {
+
+    /**
+     * The states of the player.
+     */
+    private enum State {
+        PLAY,  // press a key
+        FROZEN // wait for the point or penalty freeze to end
+    }
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * Game entities.
+     */
+    private final SteppedDealer dealer;
+    private final Table table;
+
+    /**
+     * The id of the player (starting from 0).
+     */
+    final int id;
+
+    /**
+     * The source of randomness of the player (the key presses).
+     */
+    private final Random random;
+
+    /**
+     * The current state of the player.
+     */
+    private State state = State.PLAY;
+
+    /**
+     * The virtual time the current freeze ends at.
+     */
+    private long frozenUntil;
+
+    SteppedPlayer(Env env, SteppedDealer dealer, Table table, int id, Random random) {
+        this.env = env;
+        this.dealer = dealer;
+        this.table = table;
+        this.id = id;
+        this.random = random;
+    }
+
+    @Override
+    long step() {
+        if (state == State.FROZEN) {
+            long timeOfFreeze = frozenUntil - env.clock.currentTimeMillis();
+            env.ui.setFreeze(id, Math.max(timeOfFreeze, 0));
+            if (timeOfFreeze > 0) return nextFreezeUpdate();
+            state = State.PLAY;
+        }
+
+        keyPressed(random.nextInt(env.config.tableSize));
+        if (state == State.FROZEN) return nextFreezeUpdate();
+        return env.clock.currentTimeMillis() + env.config.computerKeyPressMillis;
+    }
+
+    /**
+     * @return - the virtual time the freeze display shows a different second (or the freeze ends) at.
+     */
+    private long nextFreezeUpdate() {
+        return Math.min(frozenUntil, env.clock.currentTimeMillis() + 1000);
+    }
+
+    /**
+     * Handles a key press: toggles the token on the slot, and claims a set once the tokens are on
+     * config.featureSize cards (also called by the game to replay a recorded key press, whether the player is frozen
+     * or not, since the recorded key presses are the ones that reached the table).
+     */
+    void keyPressed(int slot) {
+        if (table.recording != null) table.recording.keyPress(id, slot);
+        if (table.removeToken(id, slot) || table.playerTokens.get(id).size() >= env.config.featureSize) return;
+        table.placeToken(id, slot);
+        if (table.playerTokens.get(id).size() < env.config.featureSize) return;
+
+        Boolean answer = dealer.checkCards(id);
+        if (answer == null) return;
+        if (table.recording != null) table.recording.claim(id, answer);
+        env.journal.claim(table.journalGame, id, answer);
+        if (answer) {
+            env.leaderboard.point(id);
+            freeze(env.config.pointFreezeMillis);
+        } else freeze(env.config.penaltyFreezeMillis);
+    }
+
+    private void freeze(long timeOfFreeze) {
+        if (timeOfFreeze <= 0) return;
+        env.journal.freeze(table.journalGame, id, timeOfFreeze);
+        env.ui.setFreeze(id, timeOfFreeze);
+        frozenUntil = env.clock.currentTimeMillis() + timeOfFreeze;
+        state = State.FROZEN;
+    }
+
+    int score() {
+        return env.leaderboard.score(id);
+    }
+}
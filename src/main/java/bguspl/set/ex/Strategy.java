@@ -0,0 +1,38 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * The way a computer player picks its key presses (see Config::computerStrategy).
+ * A strategy is asked for the next key press by the computer player thread only, so it may keep state of its own.
+ */
+public interface Strategy {
+
+    /**
+     * @param pending - the number of key presses of the player waiting to be handled.
+     * @return - the slot to press next, or -1 to press nothing for now.
+     */
+    int nextKeyPress(int pending);
+
+    /**
+     * Creates the strategy of a computer player.
+     *
+     * @param name   - the name of the strategy: "random" (presses random slots) or "finder" (finds a set on the table
+     *               and presses its slots).
+     * @param random - the source of randomness of the player.
+     * @return - the strategy (a random one if the name is unknown).
+     */
+    static Strategy of(String name, Env env, Table table, int player, Random random) {
+        switch (name.toLowerCase()) {
+            case "finder":
+                return new SetFinderStrategy(env, table, player);
+            case "random":
+                break;
+            default:
+                env.logger.severe("unknown computer strategy " + name + ", using random");
+        }
+        return pending -> random.nextInt(env.config.tableSize);
+    }
+}
@@ -1,13 +1,14 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.LatencyTracker;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * This class contains the data that is visible to the player.
@@ -22,28 +23,67 @@ public class Table {
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * Mapping between a slot and the card placed in it (-1 if none).
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    protected final int[] slotToCard; // card per slot (if any)
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * Mapping between a card and the slot it is in (-1 if none).
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    protected final int[] cardToSlot; // slot per card (if any)
 
     /**
      * list of players and for each player there is all the tokens he has, each number is the token slot
      */
     protected List<List<Integer>> playerTokens;
 
+    /**
+     * The players having a token on each slot: a bitset of config.players bits per slot (slot s uses the words
+     * s*tokenWords ... (s+1)*tokenWords-1), so removing a card visits only the players with a token on it.
+     * The bits are set and cleared atomically, since the players and the dealer update them concurrently.
+     */
+    private final AtomicLongArray slotPlayers;
+
+    /**
+     * The number of words of the bitset of a slot.
+     */
+    private final int tokenWords;
+
+    /**
+     * The epoch of the table: advanced by the dealer every time it clears the table to redeal it (a reshuffle), so a
+     * key press or a claim made on the table of an earlier epoch is recognized as stale with a single volatile read.
+     * Written by the dealer thread only.
+     */
+    private volatile int epoch;
+
+    /**
+     * The version of the cards on the table, advanced by every card placed or removed (see Table::snapshot).
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * The hints of the table, computed in the background (null unless config.hints).
+     */
+    private final Hints hints;
+
+    /**
+     * The recording of the game played on this table (null if the game is not recorded).
+     */
+    protected GameRecording recording;
+
+    /**
+     * The id of the game played on this table in the event journal (see Env::journal).
+     */
+    protected final int journalGame;
+
     /**
      * Constructor for testing.
      *
      * @param env        - the game environment objects.
-     * @param slotToCard - mapping between a slot and the card placed in it (null if none).
-     * @param cardToSlot - mapping between a card and the slot it is in (null if none).
+     * @param slotToCard - mapping between a slot and the card placed in it (-1 if none).
+     * @param cardToSlot - mapping between a card and the slot it is in (-1 if none).
      */
-    public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
+    public Table(Env env, int[] slotToCard, int[] cardToSlot) {
 
         this.env = env;
         this.slotToCard = slotToCard;
@@ -52,6 +92,11 @@ public class Table {
         for(int i = 0 ; i < env.config.players ; i++) {
             this.playerTokens.add(new ArrayList<Integer>());
         }
+        this.tokenWords = Math.max(1, (env.config.players + 63) >>> 6);
+        this.slotPlayers = new AtomicLongArray(slotToCard.length * tokenWords);
+        this.journalGame = env.journal.gameStarted();
+        env.leaderboard.reset();
+        this.hints = env.config.hints ? new Hints(env, this) : null;
     }
 
     /**
@@ -61,27 +106,45 @@ public class Table {
      */
     public Table(Env env) {
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, empty(env.config.tableSize), empty(env.config.deckSize));
         this.playerTokens =   new LinkedList<List<Integer>>();
         for(int i = 0 ; i < env.config.players ; i++) {
             this.playerTokens.add(new LinkedList<Integer>());
         }
     }
 
+    /**
+     * @return - a mapping of the given size with nothing mapped (all -1).
+     */
+    private static int[] empty(int size) {
+        int[] mapping = new int[size];
+        Arrays.fill(mapping, -1);
+        return mapping;
+    }
+
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
+     * The sets are found and printed in the background (once per version of the table), so this returns at once.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        if(deck == null || deck.isEmpty()){
-            return;
-        }
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-            StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
-        });
+        if (hints != null) hints.request();
+    }
+
+    /**
+     * @return - the version of the cards on the table (changes whenever a card is placed or removed).
+     */
+    long version() {
+        return version.get();
+    }
+
+    /**
+     * @param version - the version of the table to copy.
+     * @return - a copy of the cards in the slots (-1 if none), or null if the table is not (or no longer) of the given
+     * version.
+     */
+    int[] snapshot(long version) {
+        int[] copy = slotToCard.clone();
+        return this.version.get() == version ? copy : null;
     }
 
     /**
@@ -91,8 +154,8 @@ public class Table {
      */
     public int countCards() {
         int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
+        for (int card : slotToCard)
+            if (card != -1)
                 ++cards;
         return cards;
     }
@@ -107,10 +170,13 @@ public class Table {
     //this does not need to be sync, the only one who removes or adds a card is the dealer, and he is only on thread
     public void placeCard(int card, int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
         cardToSlot[card] = slot;
         slotToCard[slot] = card;
+        version.incrementAndGet();
+        if (recording != null) recording.deal(card, slot);
+        env.journal.placeCard(journalGame, card, slot);
         env.ui.placeCard(card, slot);
     }
 
@@ -122,38 +188,149 @@ public class Table {
     //we first sleep as requested, then show in UI that there is no card. then delete the card, and after that delete the toknes
     //we delete card before tokens, because after deleting the card no one will add a token to it (we don't want to add a token to a deleted card)
     public void removeCard(int slot) { 
-        Integer cardToRemove = slotToCard[slot];
-        if(cardToRemove != null){//if the cards does not exstis no need to wait
+        int cardToRemove = slotToCard[slot];
+        if(cardToRemove != -1){//if the cards does not exstis no need to wait
             try {
-                Thread.sleep(env.config.tableDelayMillis);
+                env.clock.sleep(env.config.tableDelayMillis);
             } catch (InterruptedException ignored) { }
         }
         //remove from cardToSlot and slotToCard
+        long requested = System.nanoTime();
         synchronized (this){//this is synced to place token so I won't remove when there is token
-            if(cardToRemove != null){
+            env.metrics.tableMonitorWaited(System.nanoTime() - requested);
+            if(cardToRemove != -1){
                 env.ui.removeCard(slot); 
-                cardToSlot[cardToRemove] = null;
-                slotToCard[slot] = null;
+                cardToSlot[cardToRemove] = -1;
+                slotToCard[slot] = -1;
+                version.incrementAndGet();
+                env.journal.removeCard(journalGame, cardToRemove, slot);
+            }
+        }
+        removeTokens(slot); //remove the tokens after the card was removed this is to verify non were added
+    }
+
+    /**
+     * Replaces the card in a grid slot with another card at once (without the dealing delay), removing the tokens on
+     * the slot, so the slot is never seen empty.
+     * @param slot - the slot of the card to replace.
+     * @param card - the card to place in the slot instead.
+     */
+    public void replaceCard(int slot, int card) {
+        long requested = System.nanoTime();
+        synchronized (this) { // synced to place token, so no token is placed on the slot in between
+            env.metrics.tableMonitorWaited(System.nanoTime() - requested);
+            int cardToRemove = slotToCard[slot];
+            if (cardToRemove != -1) {
+                env.ui.removeCard(slot);
+                cardToSlot[cardToRemove] = -1;
+                env.journal.removeCard(journalGame, cardToRemove, slot);
             }
+            removeTokens(slot);
+            cardToSlot[card] = slot;
+            slotToCard[slot] = card;
+            version.incrementAndGet();
+            if (recording != null) recording.deal(card, slot);
+            env.journal.placeCard(journalGame, card, slot);
+            env.ui.placeCard(card, slot);
         }
-        int i = 0;//remove the tokens after the card was removed this is to verify non were added
-        for (List<Integer> row : playerTokens) {
-            this.removeToken(i, slot);
-            i++;
+    }
+
+    /**
+     * Removes the tokens on a grid slot, visiting only the players having one there.
+     */
+    private void removeTokens(int slot) {
+        for (int word = slot * tokenWords; word < (slot + 1) * tokenWords; word++) {
+            for (long bits = slotPlayers.get(word); bits != 0; bits &= bits - 1) {
+                int player = ((word - slot * tokenWords) << 6) + Long.numberOfTrailingZeros(bits);
+                this.removeToken(player, slot);
+            }
         }
     }
 
+    /**
+     * @return - true iff the player has a token on the slot (read from the bitset of the slot, without locking).
+     */
+    boolean hasToken(int player, int slot) {
+        return (slotPlayers.get(slot * tokenWords + (player >>> 6)) & 1L << player) != 0;
+    }
+
+    /**
+     * @return - the slots of the tokens of every player (read from the bitsets of the slots, without locking).
+     */
+    int[][] tokens() {
+        int players = playerTokens.size();
+        int[][] tokens = new int[players][];
+        int[] counts = new int[players];
+        long[] words = new long[slotPlayers.length()];
+        for (int word = 0; word < words.length; word++) {
+            words[word] = slotPlayers.get(word);
+            for (long bits = words[word]; bits != 0; bits &= bits - 1)
+                counts[((word % tokenWords) << 6) + Long.numberOfTrailingZeros(bits)]++;
+        }
+        for (int player = 0; player < players; player++) tokens[player] = new int[counts[player]];
+        Arrays.fill(counts, 0);
+        for (int word = 0; word < words.length; word++)
+            for (long bits = words[word]; bits != 0; bits &= bits - 1) {
+                int player = ((word % tokenWords) << 6) + Long.numberOfTrailingZeros(bits);
+                tokens[player][counts[player]++] = word / tokenWords;
+            }
+        return tokens;
+    }
+
+    /**
+     * Marks (or unmarks) the token of a player on a slot in the bitset of the slot.
+     */
+    private void markToken(int player, int slot, boolean marked) {
+        int word = slot * tokenWords + (player >>> 6);
+        long bit = 1L << player;
+        long bits;
+        do {
+            bits = slotPlayers.get(word);
+        } while (!slotPlayers.compareAndSet(word, bits, marked ? bits | bit : bits & ~bit));
+    }
+
+    /**
+     * @return - the current epoch of the table (see Table::epoch).
+     */
+    public int epoch() {
+        return epoch;
+    }
+
+    /**
+     * Starts a new epoch of the table, once the dealer cleared it and before it redeals it: the key presses, tokens
+     * and claims of the players made in the previous epochs become stale.
+     */
+    public void advanceEpoch() {
+        epoch++;
+    }
+
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
      */
-    //this is synced to the remove so I won't place before removing
     public void placeToken(int player, int slot) {
+        placeToken(player, slot, epoch);
+    }
+
+    /**
+     * Places a player token on a grid slot, unless the table was redealt since the player saw it.
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot on which to place the token.
+     * @param epoch  - the epoch of the table the player saw when pressing the key.
+     */
+    //this is synced to the remove so I won't place before removing
+    public void placeToken(int player, int slot, int epoch) {
+        long requested = System.nanoTime();
         synchronized (this){
-            if (slotToCard[slot] != null) {
+            env.metrics.tableMonitorWaited(System.nanoTime() - requested);
+            if (slotToCard[slot] != -1 && epoch == this.epoch) {
+                long stamp = env.latency.stamp();
                 env.ui.placeToken(player, slot);
+                env.latency.record(LatencyTracker.Stage.UI_PLACE_TOKEN, stamp);
                 playerTokens.get(player).add(slot);
+                markToken(player, slot, true);
+                env.journal.placeToken(journalGame, player, slot);
             }
         }
     }
@@ -170,6 +347,8 @@ public class Table {
         if (playerTokens.get(player).contains(slot)) {
             env.ui.removeToken(player, slot);
             playerTokens.get(player).remove(Integer.valueOf(slot));
+            markToken(player, slot, false);
+            env.journal.removeToken(journalGame, player, slot);
             return true;
         } else {
             return false;
@@ -184,6 +363,8 @@ public class Table {
     public void removeAllTokensOfPlayer(int player) {
         playerTokens.get(player).forEach(token ->{
             env.ui.removeToken(player, token);
+            markToken(player, token, false);
+            env.journal.removeToken(journalGame, player, token);
         });
         playerTokens.get(player).clear();
     }
@@ -196,7 +377,7 @@ public class Table {
     public List<Integer> getEmptySlots() {
         List<Integer> emptySlots = new LinkedList<>();
         for(int i = 0 ; i < slotToCard.length ; i++) {
-            if(slotToCard[i] == null) {
+            if(slotToCard[i] == -1) {
                 emptySlots.add(i);
             }
         }
@@ -209,16 +390,16 @@ public class Table {
     public List<Integer> getNotEmptyCards() {
         List<Integer> emptySlots = new LinkedList<>();
         for(int i = 0 ; i < slotToCard.length ; i++) {
-            if(slotToCard[i] != null) {
+            if(slotToCard[i] != -1) {
                 emptySlots.add(slotToCard[i]);
             }
         }
         return emptySlots;
     }
     /**
-     * return card
+     * return card (-1 if the slot is empty)
      */
-    public Integer getCard(int slot) {
+    public int getCard(int slot) {
         return slotToCard[slot];
     }
 }
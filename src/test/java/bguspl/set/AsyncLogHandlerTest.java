@@ -0,0 +1,169 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncLogHandlerTest {
+
+    /**
+     * A handler that keeps the messages published to it, and blocks on its first record if asked to.
+     */
+    private static class Target extends Handler {
+
+        final List<String> messages = new ArrayList<>();
+        final CountDownLatch publishing = new CountDownLatch(1);
+        final CountDownLatch released;
+        volatile int flushes;
+        volatile boolean closed;
+
+        Target(boolean blocked) {
+            released = new CountDownLatch(blocked ? 1 : 0);
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            publishing.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (messages) {
+                messages.add(record.getMessage());
+            }
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        List<String> messages() {
+            synchronized (messages) {
+                return new ArrayList<>(messages);
+            }
+        }
+    }
+
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.ALL);
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Handler handler : logger.getHandlers()) {
+            logger.removeHandler(handler);
+            handler.close();
+        }
+    }
+
+    private AsyncLogHandler handler(Target target, int capacity) {
+        AsyncLogHandler handler = new AsyncLogHandler(target, capacity);
+        logger.addHandler(handler);
+        return handler;
+    }
+
+    @Test
+    void log_BuildsTheMessagesOfTheTemplates() {
+
+        Target target = new Target(false);
+        AsyncLogHandler handler = handler(target, 16);
+        AsyncLog log = AsyncLog.of(logger);
+        log.log(Level.INFO, "no arguments {}");
+        log.log(Level.INFO, "card {} dealt", 7);
+        log.log(Level.INFO, "card {} placed on slot {}", 7, -3);
+        log.log(Level.INFO, "player {} pressed slot {} at {}", 1, 2, Long.MAX_VALUE);
+        log.log(Level.INFO, "{}{} and {}", 1, 2);
+        log.log(Level.FINEST, "not loggable {}", 1);
+        logger.setLevel(Level.INFO);
+        log.log(Level.FINE, "not loggable {}", 2);
+        handler.flush();
+
+        assertEquals(Arrays.asList("no arguments {}", "card 7 dealt", "card 7 placed on slot -3",
+                "player 1 pressed slot 2 at " + Long.MAX_VALUE, "12 and {}", "not loggable 1"), target.messages());
+        assertEquals("card 7 placed on slot -3", AsyncLogHandler.format("card {} placed on slot {}", 2, 7, -3, 0));
+    }
+
+    @Test
+    void publish_KeepsTheOrderOfTheRecords() {
+
+        Target target = new Target(false);
+        AsyncLogHandler handler = handler(target, 8);
+        AsyncLog log = AsyncLog.of(logger);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 2 == 0) {
+                log.log(Level.INFO, "event {}", i);
+            } else {
+                logger.info("event " + i);
+            }
+            expected.add("event " + i);
+            if (i % 4 == 3) handler.flush(); // the buffer never fills up
+        }
+        handler.flush();
+
+        assertEquals(0, handler.dropped());
+        assertEquals(expected, target.messages());
+    }
+
+    @Test
+    void publish_FullBufferDropsTheRecords() throws InterruptedException {
+
+        Target target = new Target(true);
+        AsyncLogHandler handler = handler(target, 4);
+        AsyncLog log = AsyncLog.of(logger);
+        log.log(Level.INFO, "event {}", 0);
+        assertTrue(target.publishing.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 10; i++) log.log(Level.INFO, "event {}", i); // the writer holds the first record
+        target.released.countDown();
+        handler.flush();
+
+        assertEquals(7, handler.dropped());
+        assertEquals(Arrays.asList("event 0", "event 1", "event 2", "event 3"), target.messages());
+    }
+
+    @Test
+    void close_WritesTheEnqueuedRecords() throws InterruptedException {
+
+        Target target = new Target(true);
+        AsyncLogHandler handler = handler(target, 16);
+        AsyncLog log = AsyncLog.of(logger);
+        for (int i = 0; i < 5; i++) log.log(Level.INFO, "event {}", i);
+        assertTrue(target.publishing.await(5, TimeUnit.SECONDS));
+        target.released.countDown();
+        logger.removeHandler(handler);
+        handler.close();
+
+        assertEquals(Arrays.asList("event 0", "event 1", "event 2", "event 3", "event 4"), target.messages());
+        assertTrue(target.flushes > 0);
+        assertTrue(target.closed);
+
+        log.log(Level.INFO, "event {}", 5); // dropped once closed
+        assertEquals(1, handler.dropped());
+        assertEquals(5, target.messages().size());
+    }
+}
@@ -0,0 +1,56 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class DealAnalyticsTest {
+
+    private DealAnalytics analytics;
+
+    @BeforeEach
+    void setUp() {
+        analytics = new DealAnalytics(mock(Logger.class), 4, 42);
+    }
+
+    @AfterEach
+    void tearDown() {
+        analytics.shutdown();
+    }
+
+    @Test
+    void analyze_ThreeCardsAreASetWithProbabilityOneInSeventyNine() throws InterruptedException {
+
+        DealAnalytics.Result result = analytics.analyze(3, 4, 3, 200_000);
+        assertEquals(200_000, result.deals());
+        assertEquals(1.0 / 79, result.meanSets(), 2 * result.meanSetsHalfWidth());
+        assertEquals(result.deals(1), result.deals() - result.deals(0));
+    }
+
+    @Test
+    void analyze_DependsOnTheSeedOnly() throws InterruptedException {
+
+        DealAnalytics.Result result = analytics.analyze(3, 4, 12, 3 * DealAnalytics.CHUNK + 5);
+        DealAnalytics single = new DealAnalytics(mock(Logger.class), 1, 42);
+        try {
+            DealAnalytics.Result again = single.analyze(3, 4, 12, 3 * DealAnalytics.CHUNK + 5);
+            for (int sets = 0; sets < 20; sets++) assertEquals(result.deals(sets), again.deals(sets));
+        } finally {
+            single.shutdown();
+        }
+        assertTrue(result.noSetProbability() > 0);
+    }
+
+    @Test
+    void analyze_RejectsTablesLargerThanTheDeck() {
+
+        assertThrows(IllegalArgumentException.class, () -> analytics.analyze(3, 2, 10, 1));
+    }
+}
@@ -0,0 +1,145 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class EventBusTest {
+
+    /**
+     * A user interface that keeps the cards, tokens and scores it shows, and blocks on its first card until released.
+     */
+    private static class Screen implements UserInterface {
+
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch disposed = new CountDownLatch(1);
+        final int[] cards = new int[12];
+        final boolean[][] tokens = new boolean[12][2];
+        final int[] scores = new int[2];
+        boolean first = true;
+
+        Screen() {
+            Arrays.fill(cards, -1);
+        }
+
+        @Override
+        public void placeCard(int card, int slot) {
+            if (first) {
+                first = false;
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            cards[slot] = card;
+        }
+
+        @Override
+        public void removeCard(int slot) {
+            cards[slot] = -1;
+        }
+
+        @Override
+        public void placeToken(int player, int slot) {
+            tokens[slot][player] = true;
+        }
+
+        @Override
+        public void removeTokens() {
+            for (boolean[] slot : tokens) Arrays.fill(slot, false);
+        }
+
+        @Override
+        public void removeTokens(int slot) {
+            Arrays.fill(tokens[slot], false);
+        }
+
+        @Override
+        public void removeToken(int player, int slot) {
+            tokens[slot][player] = false;
+        }
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {
+        }
+
+        @Override
+        public void setElapsed(long millies) {
+        }
+
+        @Override
+        public void setFreeze(int player, long millies) {
+        }
+
+        @Override
+        public void setScore(int player, int score) {
+            scores[player] = score;
+        }
+
+        @Override
+        public void announceWinner(int[] players) {
+        }
+
+        @Override
+        public void reset() {
+            Arrays.fill(cards, -1);
+            removeTokens();
+            Arrays.fill(scores, 0);
+        }
+
+        @Override
+        public void dispose() {
+            disposed.countDown();
+        }
+    }
+
+    @Test
+    void blockedConsumer_DoesNotBlockPublishing_AndResynchronizes() throws InterruptedException {
+
+        Logger logger = mock(Logger.class);
+        Properties properties = new Properties();
+        properties.setProperty("Rows", "3");
+        properties.setProperty("Columns", "4");
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("ComputerPlayers", "0");
+        Screen screen = new Screen();
+        EventBus bus = new EventBus(logger, new Config(logger, properties), 4, new String[]{"blocked"}, screen);
+
+        Thread engine = new Thread(() -> {
+            for (int card = 0; card < 1000; card++) {
+                bus.placeCard(card, card % 12);
+                bus.placeToken(card % 2, card % 12);
+                bus.setCountdown(card, false);
+                if (card % 12 == 5) bus.removeTokens(card % 12);
+            }
+            bus.removeCard(11);
+            bus.setScore(1, 7);
+        });
+        engine.start();
+        engine.join(5000);
+        assertFalse(engine.isAlive(), "publishing waited for the blocked consumer");
+
+        screen.blocked.countDown();
+        bus.dispose();
+        assertEquals(0, screen.disposed.getCount());
+        assertTrue(bus.overruns() > 0);
+
+        int[] cards = new int[12];
+        for (int card = 0; card < 1000; card++) cards[card % 12] = card;
+        cards[11] = -1;
+        assertArrayEquals(cards, screen.cards);
+        assertArrayEquals(new int[]{0, 7}, screen.scores);
+        for (int slot = 0; slot < 12; slot++)
+            assertArrayEquals(new boolean[]{slot % 2 == 0 && slot != 5, slot % 2 == 1 && slot != 5}, screen.tokens[slot]);
+    }
+}
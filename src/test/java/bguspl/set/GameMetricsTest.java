@@ -0,0 +1,58 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class GameMetricsTest {
+
+    private GameMetrics metrics;
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @BeforeEach
+    void setUp() {
+        metrics = new GameMetrics(mock(Logger.class), 2);
+        metrics.register();
+    }
+
+    @AfterEach
+    void tearDown() {
+        metrics.unregister();
+    }
+
+    @Test
+    void register_ExposesTheCountersAndGauges() throws JMException {
+
+        metrics.watchPlayer(1, () -> 2, () -> 500);
+        metrics.claimSubmitted(1);
+        metrics.claimSubmitted(1);
+        metrics.claimJudged(1, true);
+        metrics.claimJudged(1, false);
+        metrics.frozen(1, 3000);
+        metrics.reshuffled(5_000_000);
+
+        ObjectName player = new ObjectName("bguspl.set:type=Player,id=2");
+        assertEquals(2L, server.getAttribute(player, "ClaimsSubmitted"));
+        assertEquals(1L, server.getAttribute(player, "ClaimsAccepted"));
+        assertEquals(1L, server.getAttribute(player, "ClaimsRejected"));
+        assertEquals(2, server.getAttribute(player, "QueueDepth"));
+        assertEquals(3000L, server.getAttribute(player, "FreezeMillis"));
+        assertEquals(500L, server.getAttribute(player, "FreezeLeftMillis"));
+
+        ObjectName dealer = new ObjectName("bguspl.set:type=Dealer");
+        assertEquals(2L, server.getAttribute(dealer, "ClaimsSubmitted"));
+        assertEquals(1L, server.getAttribute(dealer, "SetsCollected"));
+        assertEquals(1L, server.getAttribute(dealer, "Reshuffles"));
+        assertEquals(5L, server.getAttribute(dealer, "ReshuffleMaxMillis"));
+        assertEquals(0, server.getAttribute(new ObjectName("bguspl.set:type=Player,id=1"), "QueueDepth"));
+    }
+}
@@ -0,0 +1,101 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class GameServerTest {
+
+    private GameServer server;
+    private Player[] players;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "1");
+        Logger logger = mock(Logger.class);
+        Config config = new Config(logger, properties);
+        players = new Player[]{mock(Player.class), mock(Player.class)};
+        server = new GameServer(logger, config, players, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.dispose();
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    /**
+     * Reads the welcome frame of a new client.
+     *
+     * @return - the player of the client.
+     */
+    private static int welcome(DataInputStream in) throws IOException {
+        assertEquals(GameServer.WELCOME, in.readByte());
+        int player = in.readShort();
+        in.readShort(); // rows
+        in.readShort(); // columns
+        assertEquals(2, in.readShort());
+        in.readByte(); // feature size
+        in.readByte(); // feature count
+        return player;
+    }
+
+    @Test
+    void clients_TakeTheHumanSeatsAndGetTheUpdates() throws IOException {
+
+        server.placeCard(7, 2);
+        try (Socket first = connect(); Socket second = connect()) {
+            DataInputStream in = new DataInputStream(first.getInputStream());
+            assertEquals(0, welcome(in));
+            assertEquals(GameServer.PLACE_CARD, in.readByte()); // the card already on the table
+            assertEquals(7, in.readInt());
+            assertEquals(2, in.readShort());
+
+            DataInputStream spectator = new DataInputStream(second.getInputStream());
+            assertEquals(-1, welcome(spectator));
+            spectator.skipBytes(7);
+
+            server.setScore(0, 3);
+            assertEquals(GameServer.SCORE, in.readByte());
+            assertEquals(0, in.readShort());
+            assertEquals(3, in.readInt());
+            assertEquals(GameServer.SCORE, spectator.readByte());
+        }
+    }
+
+    @Test
+    void keyPresses_AreFedToThePlayer() throws IOException {
+
+        try (Socket socket = connect()) {
+            welcome(new DataInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeByte(GameServer.KEY_PRESS);
+            out.writeShort(5);
+            out.flush();
+            verify(players[0], timeout(5000)).keyPressed(eq(5), anyLong());
+        }
+    }
+}
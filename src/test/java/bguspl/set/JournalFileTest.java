@@ -0,0 +1,89 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalFileTest {
+
+    private static JournalFile journalFile(Path path, int records) throws IOException {
+        return new JournalFile(path, JournalFile.HEADER_SIZE + (long) records * JournalFile.RECORD_SIZE);
+    }
+
+    /**
+     * @return - what JournalReader prints for the journal with --dump.
+     */
+    private static String read(Path path) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true));
+        try {
+            JournalReader.main(new String[]{path.toString(), "--dump"});
+        } finally {
+            System.setOut(out);
+        }
+        return printed.toString();
+    }
+
+    @Test
+    void append_RecordsAreReadBack(@TempDir Path directory) throws IOException {
+
+        Path path = directory.resolve("journal.bin");
+        JournalFile file = journalFile(path, 100);
+        EventJournal journal = new EventJournal(file, new VirtualClock(1234));
+        int game = journal.gameStarted();
+        journal.placeCard(game, 7, 3);
+        journal.placeToken(game, 1, 3);
+        journal.claim(game, 1, true);
+        journal.freeze(game, 1, 1000);
+        file.close();
+
+        assertEquals(5, file.records());
+        assertEquals(0, file.dropped());
+        assertEquals(JournalFile.HEADER_SIZE + 5 * JournalFile.RECORD_SIZE, Files.size(path));
+        String printed = read(path);
+        assertTrue(printed.contains("game 1 GAME_START player -1 slot -1 value -1 clock 1234"), printed);
+        assertTrue(printed.contains("game 1 PLACE_CARD player -1 slot 3 value 7 clock 1234"), printed);
+        assertTrue(printed.contains("game 1 PLACE_TOKEN player 1 slot 3 value -1 clock 1234"), printed);
+        assertTrue(printed.contains("game 1 CLAIM player 1 slot -1 value 1 clock 1234"), printed);
+        assertTrue(printed.contains("game 1 FREEZE player 1 slot -1 value 1000 clock 1234"), printed);
+        assertTrue(printed.contains("5 records of 1 games"), printed);
+    }
+
+    @Test
+    void append_FullFileDropsTheRecords(@TempDir Path directory) throws IOException {
+
+        JournalFile file = journalFile(directory.resolve("journal.bin"), 3);
+        for (int i = 0; i < 3; i++)
+            assertTrue(file.append(EventJournal.Type.PLACE_CARD.code(), i, i, 1, -1, i, i));
+        assertFalse(file.append(EventJournal.Type.PLACE_CARD.code(), 3, 3, 1, -1, 3, 3));
+        assertFalse(file.append(EventJournal.Type.PLACE_CARD.code(), 4, 4, 1, -1, 4, 4));
+        file.close();
+
+        assertEquals(3, file.records());
+        assertEquals(2, file.dropped());
+        assertTrue(read(file.path).contains("3 records of 1 games"));
+    }
+
+    @Test
+    void append_AfterCloseIsDropped(@TempDir Path directory) throws IOException {
+
+        JournalFile file = journalFile(directory.resolve("journal.bin"), 100);
+        assertTrue(file.append(EventJournal.Type.PLACE_CARD.code(), 0, 0, 1, -1, 0, 0));
+        file.close();
+
+        assertFalse(file.append(EventJournal.Type.PLACE_CARD.code(), 1, 1, 1, -1, 1, 1));
+        assertEquals(1, file.records());
+        assertEquals(JournalFile.HEADER_SIZE + JournalFile.RECORD_SIZE, Files.size(file.path));
+        file.close(); // closing twice does nothing
+    }
+}
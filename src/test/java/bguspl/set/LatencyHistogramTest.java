@@ -0,0 +1,66 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    LatencyHistogram histogram;
+
+    @BeforeEach
+    void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    void percentile_Empty() {
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    void percentile_SmallValuesAreExact() {
+
+        for (int i = 1; i <= 10; i++)
+            histogram.record(i);
+        assertEquals(5, histogram.percentile(50));
+        assertEquals(10, histogram.percentile(100));
+        assertEquals(5.5, histogram.mean());
+    }
+
+    @Test
+    void percentile_LargeValuesAreWithinBucketError() {
+
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(i * 1000L);
+        long p90 = histogram.percentile(90);
+        assertTrue(p90 >= 900_000 && p90 <= 900_000 * 17 / 16, "p90 was " + p90);
+        assertEquals(1_000_000, histogram.max());
+    }
+
+    @Test
+    void reset_ClearsSamples() {
+
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+    }
+
+    @Test
+    void add_MergesTheSamples() {
+
+        LatencyHistogram other = new LatencyHistogram();
+        for (int i = 1; i <= 5; i++) histogram.record(i);
+        for (int i = 6; i <= 10; i++) other.record(i);
+        histogram.add(other);
+        assertEquals(10, histogram.count());
+        assertEquals(5, histogram.percentile(50));
+        assertEquals(10, histogram.max());
+        assertEquals(5.5, histogram.mean());
+    }
+}
@@ -0,0 +1,53 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class LeaderboardTest {
+
+    @Test
+    void point_KeepsTheStandingsOfAllThePlayers() {
+
+        int players = 50;
+        Leaderboard leaderboard = new Leaderboard(players, mock(UserInterface.class));
+        int[] scores = new int[players];
+        Random random = new Random(1);
+        for (int point = 0; point < 2000; point++) {
+            int player = random.nextInt(players);
+            assertEquals(++scores[player], leaderboard.point(player));
+
+            int max = Arrays.stream(scores).max().getAsInt();
+            assertArrayEquals(IntStream.range(0, players).filter(p -> scores[p] == max).toArray(),
+                    leaderboard.leaders());
+            for (int p = 0; p < players; p++) {
+                int score = scores[p];
+                assertEquals(score, leaderboard.score(p));
+                assertEquals(1 + Arrays.stream(scores).filter(s -> s > score).count(), leaderboard.rank(p));
+            }
+            int[] top = leaderboard.top(5);
+            for (int i = 1; i < top.length; i++) assertEquals(true, scores[top[i - 1]] >= scores[top[i]]);
+        }
+    }
+
+    @Test
+    void point_PublishesTheScore() {
+
+        UserInterface ui = mock(UserInterface.class);
+        Leaderboard leaderboard = new Leaderboard(3, ui);
+        leaderboard.point(2);
+        leaderboard.point(2);
+        verify(ui).setScore(2, 2);
+
+        leaderboard.reset();
+        assertEquals(0, leaderboard.score(2));
+        assertArrayEquals(new int[]{0, 1, 2}, leaderboard.leaders());
+    }
+}
@@ -0,0 +1,74 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+
+class SpectatorStreamTest {
+
+    private SpectatorStream stream;
+    private final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "10");
+        properties.put("FrameRate", "100");
+        stream = new SpectatorStream(mock(Logger.class), new Config(mock(Logger.class), properties));
+        stream.subscribe(frames::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stream.dispose();
+    }
+
+    private ByteBuffer next() throws InterruptedException {
+        byte[] frame = frames.poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        return ByteBuffer.wrap(frame);
+    }
+
+    @Test
+    void subscribe_SendsASnapshotThenTheChangesOnly() throws InterruptedException {
+
+        ByteBuffer snapshot = next();
+        assertEquals(SpectatorStream.SNAPSHOT, snapshot.get());
+        assertEquals(0, snapshot.getInt());
+        assertEquals(12, snapshot.getShort()); // all the slots
+
+        synchronized (stream) { // all in the same frame
+            stream.placeCard(40, 3);
+            stream.placeToken(9, 3);
+            stream.placeToken(1, 3);
+            stream.setScore(9, 2);
+            stream.setScore(9, 3);
+        }
+
+        ByteBuffer delta = next();
+        assertEquals(SpectatorStream.DELTA, delta.get());
+        assertEquals(1, delta.getInt());
+        assertEquals(1, delta.getShort()); // only slot 3
+        assertEquals(3, delta.getShort());
+        assertEquals(40, delta.getInt());
+        assertEquals(1 << 1, delta.get()); // players 1 and 9
+        assertEquals(1 << 1, delta.get());
+        assertEquals(1, delta.getShort()); // only the last score of player 9
+        assertEquals(9, delta.getShort());
+        assertEquals(3, delta.getInt());
+        assertEquals(0, delta.get()); // no countdown nor winners
+        assertEquals(0, delta.remaining());
+    }
+}
@@ -0,0 +1,56 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class TournamentTest {
+
+    private static Properties properties() {
+        Properties properties = new Properties();
+        properties.setProperty("FeatureCount", "3");
+        properties.setProperty("TurnTimeoutSeconds", "5");
+        properties.setProperty("ComputerKeyPressSeconds", "0.01");
+        properties.setProperty("TournamentLineups", "random,finder;finder,finder,finder");
+        properties.setProperty("TournamentGames", "2");
+        properties.setProperty("HostConcurrency", "2");
+        properties.setProperty("Seed", "7");
+        return properties;
+    }
+
+    @Test
+    void run_ReportsEveryLineup() {
+
+        Tournament tournament = new Tournament(mock(Logger.class), properties());
+        tournament.run();
+
+        String report = tournament.report();
+        assertTrue(report.contains("line-up random,finder: 2 games"), report);
+        assertTrue(report.contains("player 2 finder"), report);
+        assertTrue(report.contains("line-up finder,finder,finder: 2 games"), report);
+        assertTrue(report.contains("player 3 finder"), report);
+        assertTrue(report.contains("4 games in"), report);
+    }
+
+    @Test
+    void steppedEngine_IsNotUsed() {
+
+        Logger logger = mock(Logger.class);
+        Properties properties = properties();
+        properties.setProperty("SteppedEngine", "True");
+        properties.setProperty("TournamentLineups", "finder,finder");
+        properties.setProperty("TournamentGames", "1");
+        Tournament tournament = new Tournament(logger, properties);
+        tournament.run();
+
+        verify(logger).severe(contains("the stepped engine ignores the computer strategies"));
+        String report = tournament.report();
+        assertTrue(report.contains("line-up finder,finder: 1 games"), report);
+    }
+}
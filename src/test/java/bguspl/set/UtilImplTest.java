@@ -0,0 +1,96 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class UtilImplTest {
+
+    private static Config config(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        return new Config(mock(Logger.class), properties);
+    }
+
+    /**
+     * @return - the sets of the cards, found by testing every combination of featureSize cards.
+     */
+    private static Set<List<Integer>> allSets(Util util, int[] cards, int size, int from, List<Integer> chosen,
+                                              Set<List<Integer>> sets) {
+        if (chosen.size() == size) {
+            int[] set = chosen.stream().mapToInt(Integer::intValue).sorted().toArray();
+            if (util.testSet(set)) sets.add(IntStream.of(set).boxed().collect(Collectors.toList()));
+            return sets;
+        }
+        for (int i = from; i < cards.length; i++) {
+            chosen.add(cards[i]);
+            allSets(util, cards, size, i + 1, chosen, sets);
+            chosen.remove(chosen.size() - 1);
+        }
+        return sets;
+    }
+
+    private static void assertFindsAllSets(int featureSize, int featureCount, int cards, long seed) {
+        Config config = config(featureSize, featureCount);
+        Util util = new UtilImpl(config);
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, new Random(seed));
+        deck = deck.subList(0, cards);
+
+        Set<List<Integer>> found = new HashSet<>();
+        for (int[] set : util.findSets(deck, Integer.MAX_VALUE)) {
+            assertTrue(util.testSet(set));
+            found.add(IntStream.of(set).boxed().collect(Collectors.toList()));
+        }
+        int[] array = deck.stream().mapToInt(Integer::intValue).toArray();
+        assertEquals(allSets(util, array, featureSize, 0, new ArrayList<>(), new HashSet<>()), found);
+    }
+
+    @Test
+    void findSets_FindsTheSameSetsAsTestingAllCombinations() {
+
+        assertFindsAllSets(3, 4, 81, 1);
+        assertFindsAllSets(3, 4, 12, 2);
+        assertFindsAllSets(4, 3, 40, 3);
+        assertFindsAllSets(5, 2, 25, 4);
+        assertFindsAllSets(2, 5, 20, 5);
+    }
+
+    @Test
+    void findSets_LargeDeck() {
+
+        Config config = config(3, 9);
+        Util util = new UtilImpl(config);
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, new Random(7));
+
+        assertEquals(19683, config.deckSize);
+        assertEquals(1, util.findSets(deck, 1).size());
+        List<int[]> table = util.findSets(deck.subList(0, 300), Integer.MAX_VALUE);
+        table.forEach(set -> assertTrue(util.testSet(set)));
+    }
+
+    @Test
+    void deckSize_IsExactAndBounded() {
+
+        assertEquals(81, Config.deckSize(3, 4));
+        assertEquals(1 << 30, Config.deckSize(2, 30));
+        assertThrows(IllegalArgumentException.class, () -> Config.deckSize(3, 20));
+        assertThrows(IllegalArgumentException.class, () -> Config.deckSize(1, 4));
+    }
+}
@@ -0,0 +1,88 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualClockTest {
+
+    VirtualClock clock;
+    ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        clock = new VirtualClock();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void sleep_LongSleepTakesNoRealTime() throws Exception {
+
+        long hour = TimeUnit.HOURS.toMillis(1);
+        long start = System.nanoTime();
+        Future<?> sleeper = executor.submit(clock.participant(() -> {
+            try {
+                clock.sleep(hour);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        sleeper.get(5, TimeUnit.SECONDS);
+
+        assertEquals(hour, clock.currentTimeMillis());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    void sleep_ParticipantsWakeInDeadlineOrder() throws Exception {
+
+        List<String> wakes = Collections.synchronizedList(new ArrayList<>());
+        List<Runnable> tasks = new ArrayList<>(); // all marked as participants before any starts
+        tasks.add(clock.participant(() -> {
+            try {
+                clock.sleep(300);
+                wakes.add("slow@" + clock.currentTimeMillis());
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        tasks.add(clock.participant(() -> {
+            try {
+                clock.sleep(200);
+                wakes.add("medium@" + clock.currentTimeMillis());
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        tasks.add(clock.participant(() -> {
+            try {
+                clock.sleep(100);
+                wakes.add("fast@" + clock.currentTimeMillis());
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        List<Future<?>> participants = new ArrayList<>();
+        for (Runnable task : tasks) participants.add(executor.submit(task));
+        for (Future<?> participant : participants) participant.get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("fast@100", "medium@200", "slow@300"), wakes);
+    }
+}
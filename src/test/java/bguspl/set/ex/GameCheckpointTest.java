@@ -0,0 +1,82 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameCheckpointTest {
+
+    private Config config;
+    private Env env;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "2");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new TableTest.MockUtil());
+    }
+
+    private GameCheckpoint checkpoint(int[] slotToCard, int[][] tokens) {
+        return new GameCheckpoint(7, 1, slotToCard, new int[]{8, 1, 5, 3}, tokens, new int[]{2, 0}, 1000,
+                new long[]{0, 500});
+    }
+
+    @Test
+    void writeReadRestore_ResumesTheSameGame() throws IOException {
+
+        GameCheckpoint checkpoint = checkpoint(new int[]{0, 4, -1, 6}, new int[][]{{1, 3}, {0}});
+        Path path = directory.resolve("game.ckpt");
+        checkpoint.write(path);
+        GameCheckpoint read = GameCheckpoint.read(path);
+        assertTrue(read.fits(config));
+        assertEquals(7, read.seed);
+        assertEquals(1, read.game);
+
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players, new Random(7));
+        for (int i = 0; i < players.length; i++) players[i] = new Player(env, dealer, table, i, false, new Random(i));
+        dealer.restore(read);
+
+        assertArrayEquals(new int[]{0, 4, -1, 6}, table.slotToCard);
+        assertEquals(2, env.leaderboard.score(0));
+        GameCheckpoint again = dealer.checkpoint();
+        assertArrayEquals(checkpoint.slotToCard, again.slotToCard);
+        assertArrayEquals(checkpoint.deck, again.deck);
+        assertArrayEquals(checkpoint.tokens, again.tokens);
+        assertArrayEquals(checkpoint.scores, again.scores);
+    }
+
+    @Test
+    void fits_RejectsStatesOutsideTheGame() {
+
+        assertFalse(checkpoint(new int[]{0, 4, -1, 9}, new int[][]{{}, {}}).fits(config)); // no such card
+        assertFalse(checkpoint(new int[]{0, 4, -1, 8}, new int[][]{{}, {}}).fits(config)); // also in the deck
+        assertFalse(checkpoint(new int[]{0, 4, -1, 6}, new int[][]{{2}, {}}).fits(config)); // token on no card
+        assertFalse(checkpoint(new int[]{0, 4, -1, 6}, new int[][]{{4}, {}}).fits(config)); // no such slot
+        assertTrue(checkpoint(new int[]{0, 4, -1, 6}, new int[][]{{}, {}}).fits(config));
+    }
+}
@@ -0,0 +1,63 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SetFinderStrategyTest {
+
+    private Table table;
+    private SetFinderStrategy strategy;
+
+    @BeforeEach
+    void setUp() {
+
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "3");
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        strategy = new SetFinderStrategy(env, table, 1);
+
+        // cards 0, 1 and 2 differ in a single feature, so they are the only set on the table
+        table.placeCard(4, 0);
+        table.placeCard(1, 3);
+        table.placeCard(0, 5);
+        table.placeCard(2, 8);
+    }
+
+    @Test
+    void nextKeyPress_PressesTheSlotsOfTheSet() {
+
+        assertEquals(3, strategy.nextKeyPress(0));
+        assertEquals(5, strategy.nextKeyPress(1));
+        assertEquals(8, strategy.nextKeyPress(2));
+        assertEquals(-1, strategy.nextKeyPress(3)); // waits for the presses to be handled
+    }
+
+    @Test
+    void nextKeyPress_TakesBackTheTokensNotOnTheSet() {
+
+        table.placeToken(1, 0);
+        table.placeToken(1, 5);
+        table.placeToken(0, 3); // a token of another player
+
+        assertEquals(0, strategy.nextKeyPress(0));
+        assertEquals(3, strategy.nextKeyPress(1));
+        assertEquals(8, strategy.nextKeyPress(2));
+        assertEquals(-1, strategy.nextKeyPress(3));
+    }
+}
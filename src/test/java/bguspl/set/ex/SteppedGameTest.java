@@ -0,0 +1,99 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameStats;
+import bguspl.set.StepClock;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+class SteppedGameTest {
+
+    private Env env;
+
+    private SteppedGame play(long seed) {
+        return play(seed, null, null);
+    }
+
+    private SteppedGame play(long seed, GameRecording replay, Path recordTo) {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "3");
+        properties.put("SteppedEngine", "True");
+        properties.put("TurnTimeoutSeconds", "10");
+        properties.put("TurnTimeoutWarningSeconds", "1");
+        properties.put("TableDelaySeconds", "0.01");
+        properties.put("ComputerKeyPressSeconds", "0.05");
+        Logger logger = mock(Logger.class);
+        Config config = new Config(logger, properties);
+        UserInterface ui = mock(UserInterface.class, withSettings().stubOnly());
+        env = new Env(logger, config, ui, new UtilImpl(config), null, new GameStats(), new StepClock());
+
+        GameRecording recording = recordTo != null ? new GameRecording(env, seed) : null;
+        SteppedGame game = replay != null ? new SteppedGame(env, replay, recording)
+                : new SteppedGame(env, seed, recording);
+        game.run();
+        if (recording != null) try {
+            recording.write(recordTo);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return game;
+    }
+
+    @Test
+    void run_PlaysTheGameToTheEnd() {
+        SteppedGame game = play(7);
+
+        assertTrue(game.isGameFinished());
+        assertEquals(1, env.stats.games());
+        int points = 0;
+        for (int score : game.scores()) points += score;
+        assertEquals(env.stats.sets(), points);
+    }
+
+    @Test
+    void run_SameSeedSameGame() {
+        SteppedGame first = play(42);
+        long firstEnd = env.clock.currentTimeMillis();
+        SteppedGame second = play(42);
+
+        assertArrayEquals(first.scores(), second.scores());
+        assertEquals(first.steps(), second.steps());
+        assertEquals(firstEnd, env.clock.currentTimeMillis());
+    }
+
+    @Test
+    void replay_ReproducesTheRecordedGame(@TempDir Path directory) throws IOException {
+        Path recorded = directory.resolve("recorded.rec"), replayed = directory.resolve("replayed.rec");
+        SteppedGame original = play(3, null, recorded);
+        SteppedGame replay = play(0, GameRecording.read(recorded), replayed);
+
+        assertArrayEquals(original.scores(), replay.scores());
+        for (GameRecording.Type type : GameRecording.Type.values())
+            assertEvents(GameRecording.read(recorded).events(type), GameRecording.read(replayed).events(type));
+    }
+
+    private static void assertEvents(List<GameRecording.Event> expected, List<GameRecording.Event> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).time, actual.get(i).time);
+            assertEquals(expected.get(i).first, actual.get(i).first);
+            assertEquals(expected.get(i).second, actual.get(i).second);
+        }
+    }
+}
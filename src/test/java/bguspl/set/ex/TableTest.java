@@ -7,6 +7,8 @@ import bguspl.set.Util;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
@@ -16,8 +18,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 class TableTest {
 
     Table table;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    private int[] slotToCard;
+    private int[] cardToSlot;
 
     @BeforeEach
     void setUp() {
@@ -32,8 +34,10 @@ class TableTest {
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
         Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
+        slotToCard = new int[config.tableSize];
+        cardToSlot = new int[config.deckSize];
+        Arrays.fill(slotToCard, -1);
+        Arrays.fill(cardToSlot, -1);
 
         Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
@@ -59,8 +63,8 @@ class TableTest {
        //table.removeCard(2);
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, slotToCard[2]);
+        assertEquals(2, cardToSlot[8]);
     }
 
     @Test
@@ -96,6 +100,21 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void removeCard_RemovesOnlyTheTokensOnTheSlot() {
+
+        fillAllSlots();
+        table.placeToken(0, 1);
+        table.placeToken(1, 1);
+        table.placeToken(1, 2);
+
+        table.removeCard(1);
+
+        assertEquals(-1, slotToCard[1]);
+        assertEquals(0, table.playerTokens.get(0).size());
+        assertEquals(Collections.singletonList(2), table.playerTokens.get(1));
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}
@@ -121,6 +140,8 @@ class TableTest {
         public void removeToken(int player, int slot) {}
         @Override
         public void announceWinner(int[] players) {}
+        @Override
+        public void reset() {}
     };
 
     static class MockUtil implements Util {